@@ -0,0 +1,145 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks AACMappings.add, both for a new category (on the home page)
+ * and for a new item (in the last category). add only accepts images that
+ * exist and are not already mapped, so each iteration starts from freshly
+ * loaded mappings and adds a batch of distinct images that were created on
+ * disk beforehand, so scores are for a whole batch of BATCH adds. Run with
+ * `-prof gc` to see allocation rates as well.
+ *
+ * @author Wenfei Lin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = AACMappingsAddBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = AACMappingsAddBenchmark.BATCH)
+@Fork(1)
+public class AACMappingsAddBenchmark {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of adds in each iteration.
+   */
+  static final int BATCH = 1000;
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of categories in the file.
+   */
+  @Param({ "10", "1000", "10000" })
+  int categories;
+
+  /**
+   * The number of items in the file, across all categories.
+   */
+  @Param({ "1000", "100000", "1000000" })
+  int items;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  Path directory;
+
+  String filename;
+
+  /**
+   * The images to add, which all exist.
+   */
+  String[] newImages;
+
+  /**
+   * Mappings on the home page.
+   */
+  Mappings home;
+
+  /**
+   * Mappings showing the items of the last category.
+   */
+  Mappings inCategory;
+
+  int next;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("aac-bench");
+    this.filename = this.directory.resolve("AACMappings.txt").toString();
+    Mappings.generate(Path.of(this.filename), this.categories, this.items);
+
+    this.newImages = new String[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      Path image = this.directory.resolve("new" + i + ".png");
+      Files.createFile(image);
+      this.newImages[i] = image.toString();
+    } // for
+  } // setUp()
+
+  @Setup(Level.Iteration)
+  public void load() throws Throwable {
+    this.home = new Mappings(this.filename);
+    this.inCategory = new Mappings(this.filename);
+    this.inCategory.getText(Mappings.categoryImage(this.categories - 1));
+    this.next = 0;
+  } // load()
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    for (String image : this.newImages) {
+      Files.deleteIfExists(Path.of(image));
+    } // for
+    Files.deleteIfExists(Path.of(this.filename));
+    Files.deleteIfExists(this.directory);
+  } // tearDown()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Add a category.
+   */
+  @Benchmark
+  public void addCategory() throws Throwable {
+    int i = this.next++;
+    this.home.add(this.newImages[i], "new" + i);
+  } // addCategory()
+
+  /**
+   * Add an item to a category.
+   */
+  @Benchmark
+  public void addItem() throws Throwable {
+    int i = this.next++;
+    this.inCategory.add(this.newImages[i], "new item " + i);
+  } // addItem()
+} // class AACMappingsAddBenchmark
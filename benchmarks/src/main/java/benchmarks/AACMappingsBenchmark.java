@@ -0,0 +1,217 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks AACMappings end to end on generated mapping files: loading
+ * (startup), getText, getImageLocs, and isCategory (every button press),
+ * and writeToFile (the save button). Adding is in AACMappingsAddBenchmark.
+ * Run with `-prof gc` to see allocation rates as well.
+ *
+ * @author Wenfei Lin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AACMappingsBenchmark {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many probe images to cycle through (a power of two).
+   */
+  static final int PROBES = 1024;
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of categories in the file.
+   */
+  @Param({ "10", "1000", "10000" })
+  int categories;
+
+  /**
+   * The number of items in the file, across all categories.
+   */
+  @Param({ "1000", "100000", "1000000" })
+  int items;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  Path directory;
+
+  String filename;
+
+  String savedFilename;
+
+  /**
+   * Mappings on the home page.
+   */
+  Mappings home;
+
+  /**
+   * Mappings showing the items of the last (and fullest) category.
+   */
+  Mappings inCategory;
+
+  String[] categoryProbes;
+
+  String[] itemProbes;
+
+  int next;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.directory = Files.createTempDirectory("aac-bench");
+    this.filename = this.directory.resolve("AACMappings.txt").toString();
+    this.savedFilename = this.directory.resolve("AACMappingsNew.txt").toString();
+    Mappings.generate(Path.of(this.filename), this.categories, this.items);
+
+    this.home = new Mappings(this.filename);
+    this.inCategory = new Mappings(this.filename);
+    int last = this.categories - 1;
+    this.inCategory.getText(Mappings.categoryImage(last));
+
+    // The items of the last category, which is the worst case for any
+    // search that goes category by category (and is one of the fullest)
+    int perCategory = Mappings.itemsIn(last, this.categories, this.items);
+    if (perCategory == 0) {
+      throw new IllegalStateException("The last category has no items to probe");
+    } // if
+    this.categoryProbes = new String[PROBES];
+    this.itemProbes = new String[PROBES];
+    for (int i = 0; i < PROBES; i++) {
+      this.categoryProbes[i] = Mappings.categoryImage((i * 7919) % this.categories);
+      this.itemProbes[i] = Mappings.itemImage(last, (i * 7919) % perCategory);
+    } // for
+
+    // Every probe must be there, or the lookups would time error messages
+    for (int i = 0; i < PROBES; i++) {
+      if (!this.home.isCategory(this.categoryProbes[i])
+          || this.inCategory.getText(this.itemProbes[i]).startsWith("Error: ")) {
+        throw new IllegalStateException("Probe " + i + " is not in " + this.filename);
+      } // if
+    } // for
+    this.next = 0;
+  } // setUp()
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(Path.of(this.filename));
+    Files.deleteIfExists(Path.of(this.savedFilename));
+    Files.deleteIfExists(this.directory);
+  } // tearDown()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Parse the whole file (startup).
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Mappings load() throws Throwable {
+    return new Mappings(this.filename);
+  } // load()
+
+  /**
+   * Tap a category on the home page.
+   */
+  @Benchmark
+  public String getTextCategory() throws Throwable {
+    this.home.reset();
+    return this.home.getText(this.categoryProbes[this.nextProbe()]);
+  } // getTextCategory()
+
+  /**
+   * Tap an item in a category.
+   */
+  @Benchmark
+  public String getTextItem() throws Throwable {
+    return this.inCategory.getText(this.itemProbes[this.nextProbe()]);
+  } // getTextItem()
+
+  /**
+   * List the images of the home page.
+   */
+  @Benchmark
+  public String[] getImageLocsHome() throws Throwable {
+    return this.home.getImageLocs();
+  } // getImageLocsHome()
+
+  /**
+   * List the images of a category.
+   */
+  @Benchmark
+  public String[] getImageLocsCategory() throws Throwable {
+    return this.inCategory.getImageLocs();
+  } // getImageLocsCategory()
+
+  /**
+   * Check a category image.
+   */
+  @Benchmark
+  public boolean isCategoryCategory() throws Throwable {
+    return this.home.isCategory(this.categoryProbes[this.nextProbe()]);
+  } // isCategoryCategory()
+
+  /**
+   * Check an item image.
+   */
+  @Benchmark
+  public boolean isCategoryItem() throws Throwable {
+    return this.home.isCategory(this.itemProbes[this.nextProbe()]);
+  } // isCategoryItem()
+
+  /**
+   * Save everything (the save button).
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void writeToFile() throws Throwable {
+    this.home.writeToFile(this.savedFilename);
+  } // writeToFile()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Get the position of the next probe.
+   */
+  private int nextProbe() {
+    int probe = this.next;
+    this.next = (this.next + 1) & (PROBES - 1);
+    return probe;
+  } // nextProbe()
+} // class AACMappingsBenchmark
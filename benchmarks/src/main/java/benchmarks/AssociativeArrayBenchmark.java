@@ -0,0 +1,201 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import structures.AssociativeArray;
+import structures.KeyNotFoundException;
+
+/**
+ * Benchmarks the basic operations of AssociativeArray, at sizes from 16
+ * to 1M pairs. Lookups come from a fixed, shuffled list of probe keys,
+ * mostly present ("hit") or mostly absent ("miss"). `set` and `remove`
+ * change the array; they are undone after each call, outside the timing,
+ * so every call sees the same array. (Undoing per call makes JMH time
+ * each call on its own, which adds the timer's cost to their scores;
+ * compare them with each other and across runs, not with `get`.)
+ *
+ * @author Wenfei Lin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssociativeArrayBenchmark {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many probe keys to cycle through (a power of two).
+   */
+  static final int PROBES = 1024;
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of pairs in the array.
+   */
+  @Param({ "16", "1024", "65536", "1048576" })
+  int size;
+
+  /**
+   * "hit" for 90% of probes present, "miss" for 10% present.
+   */
+  @Param({ "hit", "miss" })
+  String workload;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  AssociativeArray<String, String> array;
+
+  String[] probes;
+
+  int next;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.array = new AssociativeArray<String, String>();
+    for (int i = 0; i < this.size; i++) {
+      this.array.set(Keys.key(i), Keys.value(i));
+    } // for
+    this.probes = Keys.probes(PROBES, this.size, this.workload.equals("hit") ? 0.9 : 0.1);
+    this.next = 0;
+  } // setUp()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  public String get() {
+    try {
+      return this.array.get(this.probe());
+    } catch (KeyNotFoundException knfe) {
+      return null;
+    } // try/catch
+  } // get()
+
+  @Benchmark
+  public String getOrDefault() {
+    return this.array.getOrDefault(this.probe(), null);
+  } // getOrDefault()
+
+  @Benchmark
+  public boolean hasKey() {
+    return this.array.hasKey(this.probe());
+  } // hasKey()
+
+  /**
+   * Sets the probe key. A hit replaces a value; a miss adds a pair (which
+   * undo removes again).
+   */
+  @Benchmark
+  public int set(Undo undo) {
+    String key = this.probe();
+    undo.remember(this.array, key);
+    this.array.set(key, key);
+    return this.array.size();
+  } // set(Undo)
+
+  /**
+   * Removes the probe key. A hit removes a pair (which undo puts back); a
+   * miss does nothing.
+   */
+  @Benchmark
+  public int remove(Undo undo) {
+    String key = this.probe();
+    undo.remember(this.array, key);
+    this.array.remove(key);
+    return this.array.size();
+  } // remove(Undo)
+
+  @Benchmark
+  public AssociativeArray<String, String> cloneArray() {
+    return this.array.clone();
+  } // cloneArray()
+
+  @Benchmark
+  public String[] getKeysForAAC() {
+    return this.array.getKeysForAAC();
+  } // getKeysForAAC()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Get the next probe key.
+   */
+  private String probe() {
+    String probe = this.probes[this.next];
+    this.next = (this.next + 1) & (PROBES - 1);
+    return probe;
+  } // probe()
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Puts a key back the way it was after each call of a benchmark that
+   * changes the array. (Undoing it inside the benchmark would time the
+   * undo too.)
+   */
+  @State(Scope.Thread)
+  public static class Undo {
+    AssociativeArray<String, String> array;
+
+    String key;
+
+    /**
+     * The key's value before the call (null if it was absent).
+     */
+    String value;
+
+    /**
+     * Remember how key is in array before it is changed.
+     */
+    void remember(AssociativeArray<String, String> array, String key) {
+      this.array = array;
+      this.key = key;
+      this.value = array.getOrDefault(key, null);
+    } // remember(AssociativeArray<String, String>, String)
+
+    @TearDown(Level.Invocation)
+    public void undo() {
+      if (this.array == null) {
+        return;
+      } // if
+      if (this.value == null) {
+        this.array.remove(this.key);
+      } else {
+        this.array.set(this.key, this.value);
+      } // if/else
+      this.array = null;
+    } // undo()
+  } // class Undo
+} // class AssociativeArrayBenchmark
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import structures.AssociativeArray;
+import structures.KVPair;
+
+/**
+ * Measures, with JOL, how much heap an AssociativeArray of 10k, 100k, and
+ * 1M pairs takes up, next to the layout it replaced: one KVPair object per
+ * pair, in a KVPair[] with the same hash index (twice the capacity) over
+ * it. The keys and values (Strings, and their byte[]s) are the same in
+ * both, so they are left out. Run it with `java -cp target/benchmarks.jar
+ * benchmarks.AssociativeArrayFootprint` (adding `-Djdk.attach.allowAttachSelf`
+ * quiets JOL's warning).
+ *
+ * @author Wenfei Lin
+ */
+public class AssociativeArrayFootprint {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The numbers of pairs to measure.
+   */
+  static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+
+  // +-------------+-------------------------------------------------
+  // | Main Method |
+  // +-------------+
+
+  public static void main(String[] args) {
+    System.out.printf("%10s %16s %16s%n", "entries", "KVPair layout", "parallel layout");
+    for (int size : SIZES) {
+      AssociativeArray<String, String> array = new AssociativeArray<String, String>();
+      for (int i = 0; i < size; i++) {
+        array.set(Keys.key(i), Keys.value(i));
+      } // for
+      KVPairLayout pairs = new KVPairLayout(size);
+      System.out.printf("%10d %16s %16s%n", size, kibibytes(footprint(pairs)),
+          kibibytes(footprint(array)));
+    } // for
+  } // main(String[])
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Measures the bytes reachable from root, but for the keys and values.
+   */
+  private static long footprint(Object root) {
+    GraphLayout layout = GraphLayout.parseInstance(root);
+    return layout.totalSize() - layout.getClassSizes().count(String.class)
+        - layout.getClassSizes().count(byte[].class);
+  } // footprint(Object)
+
+  /**
+   * Formats a number of bytes in KiB (or MiB, from 1 MiB up).
+   */
+  private static String kibibytes(long bytes) {
+    if (bytes < (1L << 20)) {
+      return String.format("%.0f KiB", bytes / 1024.0);
+    } // if
+    return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+  } // kibibytes(long)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The pairs laid out as AssociativeArray held them before: a KVPair per
+   * pair, in an array of the same capacity, with the same index over it.
+   */
+  static class KVPairLayout {
+    final KVPair<?, ?>[] pairs;
+    final int[] index;
+    final int size;
+
+    KVPairLayout(int size) {
+      this.size = size;
+      int capacity = 16;
+      while (capacity < this.size) {
+        capacity *= 2;
+      } // while
+      this.pairs = new KVPair<?, ?>[capacity];
+      this.index = new int[2 * capacity];
+      for (int i = 0; i < this.size; i++) {
+        this.pairs[i] = new KVPair<String, String>(Keys.key(i), Keys.value(i));
+      } // for
+    } // KVPairLayout(int)
+  } // class KVPairLayout
+} // class AssociativeArrayFootprint
@@ -0,0 +1,172 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import structures.AssociativeArray;
+import structures.ConcurrentAssociativeArray;
+
+/**
+ * Compares the throughput of ConcurrentAssociativeArray with that of an
+ * AssociativeArray behind one global lock, for a mix of 7/8 lookups and
+ * 1/8 updates on a shared array, at 1 thread (no contention), 4 threads,
+ * and as many threads as there are processors. (Other counts can be run
+ * with `-t`, which overrides them all.)
+ *
+ * @author Wenfei Lin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentAssociativeArrayBenchmark {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many probe keys each thread cycles through (a power of two).
+   */
+  static final int PROBES = 1024;
+
+  /**
+   * The number of pairs in the shared array.
+   */
+  static final int SIZE = 65536;
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * "concurrent" for ConcurrentAssociativeArray, "synchronized" for an
+   * AssociativeArray behind a global lock.
+   */
+  @Param({ "concurrent", "synchronized" })
+  String implementation;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  ConcurrentAssociativeArray<String, String> concurrent;
+
+  SynchronizedAssociativeArray synchronizedArray;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.concurrent = new ConcurrentAssociativeArray<String, String>();
+    this.synchronizedArray = new SynchronizedAssociativeArray();
+    for (int i = 0; i < SIZE; i++) {
+      this.concurrent.set(Keys.key(i), Keys.value(i));
+      this.synchronizedArray.set(Keys.key(i), Keys.value(i));
+    } // for
+  } // setUp()
+
+  /**
+   * Each thread's own probe keys, so threads do not share a counter.
+   */
+  @State(Scope.Thread)
+  public static class Probes {
+    String[] probes;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.probes = Keys.probes(PROBES, SIZE, 1.0);
+      this.next = (int) (Thread.currentThread().getId() & (PROBES - 1));
+    } // setUp()
+
+    String next() {
+      String probe = this.probes[this.next];
+      this.next = (this.next + 1) & (PROBES - 1);
+      return probe;
+    } // next()
+  } // class Probes
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  @Threads(1)
+  public String mixed1Thread(Probes probes) {
+    return this.mixed(probes);
+  } // mixed1Thread(Probes)
+
+  @Benchmark
+  @Threads(4)
+  public String mixed4Threads(Probes probes) {
+    return this.mixed(probes);
+  } // mixed4Threads(Probes)
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String mixedMaxThreads(Probes probes) {
+    return this.mixed(probes);
+  } // mixedMaxThreads(Probes)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * One operation: one in eight is a set (of an existing key, so the
+   * size stays put), the rest are lookups.
+   */
+  private String mixed(Probes probes) {
+    String key = probes.next();
+    boolean write = (probes.next & 15) < 2;
+    if (this.implementation.equals("concurrent")) {
+      if (write) {
+        this.concurrent.set(key, key);
+        return key;
+      } // if
+      return this.concurrent.getOrDefault(key, null);
+    } else {
+      if (write) {
+        this.synchronizedArray.set(key, key);
+        return key;
+      } // if
+      return this.synchronizedArray.getOrDefault(key, null);
+    } // if/else
+  } // mixed(Probes)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * An AssociativeArray with every method behind one lock.
+   */
+  static class SynchronizedAssociativeArray {
+    final AssociativeArray<String, String> array = new AssociativeArray<String, String>();
+
+    synchronized void set(String key, String value) {
+      this.array.set(key, value);
+    } // set(String, String)
+
+    synchronized String getOrDefault(String key, String defaultValue) {
+      return this.array.getOrDefault(key, defaultValue);
+    } // getOrDefault(String, String)
+  } // class SynchronizedAssociativeArray
+} // class ConcurrentAssociativeArrayBenchmark
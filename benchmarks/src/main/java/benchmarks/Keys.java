@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Keys and values shared by the benchmarks.
+ *
+ * @author Wenfei Lin
+ */
+class Keys {
+  /**
+   * The seed for every random choice, so runs are comparable.
+   */
+  static final long SEED = 42;
+
+  /**
+   * The ith key that is put in an array.
+   */
+  static String key(int i) {
+    return "img/key" + i + ".png";
+  } // key(int)
+
+  /**
+   * The value that goes with the ith key.
+   */
+  static String value(int i) {
+    return "value " + i;
+  } // value(int)
+
+  /**
+   * The ith key that is never put in an array.
+   */
+  static String missingKey(int i) {
+    return "img/missing" + i + ".png";
+  } // missingKey(int)
+
+  /**
+   * Make count probe keys for an array holding the keys 0 .. size-1,
+   * where about hitRatio of them are in the array.
+   */
+  static String[] probes(int count, int size, double hitRatio) {
+    Random random = new Random(SEED);
+    String[] probes = new String[count];
+    for (int i = 0; i < count; i++) {
+      if (random.nextDouble() < hitRatio) {
+        probes[i] = key(random.nextInt(size));
+      } else {
+        probes[i] = missingKey(random.nextInt(Integer.MAX_VALUE));
+      } // if/else
+    } // for
+    return probes;
+  } // probes(int, int, double)
+} // class Keys
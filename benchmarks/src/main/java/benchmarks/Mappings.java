@@ -0,0 +1,156 @@
+package benchmarks;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A way for the benchmarks to call AACMappings, and to make mapping files
+ * for it. AACMappings lives in the unnamed package, which code in a
+ * package (like JMH's generated code) cannot name, so its methods are
+ * reached through method handles. The handles are static finals, which
+ * the JIT treats as constants, so calls through them cost about the same
+ * as direct calls.
+ *
+ * @author Wenfei Lin
+ */
+class Mappings {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  static final MethodHandle NEW;
+  static final MethodHandle GET_TEXT;
+  static final MethodHandle GET_IMAGE_LOCS;
+  static final MethodHandle IS_CATEGORY;
+  static final MethodHandle ADD;
+  static final MethodHandle RESET;
+  static final MethodHandle WRITE_TO_FILE;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      Class<?> mappings = Class.forName("AACMappings");
+      NEW = lookup.findConstructor(mappings, methodType(void.class, String.class))
+          .asType(methodType(Object.class, String.class));
+      GET_TEXT = virtual(lookup, mappings, "getText", String.class, String.class);
+      GET_IMAGE_LOCS = virtual(lookup, mappings, "getImageLocs", String[].class);
+      IS_CATEGORY = virtual(lookup, mappings, "isCategory", boolean.class, String.class);
+      ADD = virtual(lookup, mappings, "add", void.class, String.class, String.class);
+      RESET = virtual(lookup, mappings, "reset", void.class);
+      WRITE_TO_FILE = virtual(lookup, mappings, "writeToFile", void.class, String.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    } // try/catch
+  } // static
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The AACMappings.
+   */
+  final Object mappings;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Load the mappings in filename.
+   */
+  Mappings(String filename) throws Throwable {
+    this.mappings = (Object) NEW.invokeExact(filename);
+  } // Mappings(String)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  String getText(String imageLoc) throws Throwable {
+    return (String) GET_TEXT.invokeExact(this.mappings, imageLoc);
+  } // getText(String)
+
+  String[] getImageLocs() throws Throwable {
+    return (String[]) GET_IMAGE_LOCS.invokeExact(this.mappings);
+  } // getImageLocs()
+
+  boolean isCategory(String imageLoc) throws Throwable {
+    return (boolean) IS_CATEGORY.invokeExact(this.mappings, imageLoc);
+  } // isCategory(String)
+
+  void add(String imageLoc, String text) throws Throwable {
+    ADD.invokeExact(this.mappings, imageLoc, text);
+  } // add(String, String)
+
+  void reset() throws Throwable {
+    RESET.invokeExact(this.mappings);
+  } // reset()
+
+  void writeToFile(String filename) throws Throwable {
+    WRITE_TO_FILE.invokeExact(this.mappings, filename);
+  } // writeToFile(String)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * The image of the ith category in a generated file.
+   */
+  static String categoryImage(int i) {
+    return "img/category" + i + ".png";
+  } // categoryImage(int)
+
+  /**
+   * The image of the jth item of the ith category in a generated file.
+   */
+  static String itemImage(int i, int j) {
+    return "img/category" + i + "/item" + j + ".png";
+  } // itemImage(int, int)
+
+  /**
+   * The number of items in the ith category of a generated file with the
+   * given number of categories and items. The items are spread evenly,
+   * with any left over going to the last categories, so the last
+   * category is always one of the fullest (and has an item if any does).
+   */
+  static int itemsIn(int i, int categories, int items) {
+    return items / categories + ((i >= categories - items % categories) ? 1 : 0);
+  } // itemsIn(int, int, int)
+
+  /**
+   * Write a mapping file with the given number of categories, and the
+   * given number of items spread across them (see itemsIn).
+   */
+  static void generate(Path file, int categories, int items) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < categories; i++) {
+        writer.write(categoryImage(i) + " category" + i + "\n");
+        int perCategory = itemsIn(i, categories, items);
+        for (int j = 0; j < perCategory; j++) {
+          writer.write(">" + itemImage(i, j) + " item " + j + " of category " + i + "\n");
+        } // for
+      } // for
+    } // try
+  } // generate(Path, int, int)
+
+  /**
+   * Find a handle for an instance method of type, adapted to take the
+   * instance as an Object.
+   */
+  private static MethodHandle virtual(MethodHandles.Lookup lookup, Class<?> type,
+      String name, Class<?> returnType, Class<?>... parameterTypes)
+      throws ReflectiveOperationException {
+    MethodHandle handle =
+        lookup.findVirtual(type, name, methodType(returnType, parameterTypes));
+    return handle.asType(handle.type().changeParameterType(0, Object.class));
+  } // virtual(MethodHandles.Lookup, Class<?>, String, Class<?>, Class<?>...)
+} // class Mappings
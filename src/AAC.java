@@ -1,8 +1,9 @@
 import javax.swing.JFrame; 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.ImageIcon;
 import javax.swing.JButton; 
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 
 import java.awt.BorderLayout;
 import java.awt.Container;
@@ -11,6 +12,12 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
 
@@ -34,8 +41,31 @@ public class AAC implements ActionListener {
 	private int endIndex;
 	private static final int NUM_ACROSS = 3;
 	private static final int NUM_DOWN = 3;
+	// The most an image is shown at, across and down (about a grid cell)
+	private static final int THUMBNAIL_SIZE = 120;
 	private String[] images;
 	private AACMappings aacMappings;
+	private MappingsJournal journal;
+	private MappingsSaver saver;
+	private MappingsReloader reloader;
+	// Decoded images, so redrawing the grid does not decode them again
+	private ImageCache imageCache;
+	// The option and arrow icons, at their own size (not scaled to a cell)
+	private ImageCache iconCache;
+	// Decodes images that are likely to be shown next into imageCache
+	private ImagePrefetcher prefetcher;
+	// Speaks item texts on a thread of its own, so taps do not wait for speech
+	private SpeechQueue speech;
+	// Item texts synthesized ahead of time, so tapping an item only plays it
+	private AudioCache audioCache;
+	// The grid's buttons (made once), and the image each cell shows and its icon
+	// (null if the cell is not in the grid)
+	private JPanel grid;
+	private JButton[] cells;
+	private String[] cellImages;
+	private ImageIcon[] cellIcons;
+	private JButton backArrow;
+	private JButton nextArrow;
 	private Scanner input;
 
 
@@ -43,15 +73,114 @@ public class AAC implements ActionListener {
 	 * Creates the AAC display for the file provided
 	 * @param filename the name of the file that contains the 
 	 * images and text that will be in the AAC
+	 * @throws IOException if the file cannot be read or is not formatted correctly
+	 */
+	public AAC(String filename) throws IOException {
+		this(List.of(filename));
+	}
+
+	/**
+	 * Creates the AAC display for the files provided, combined in order
+	 * (see AACMappings(List)). With one file, if the system property
+	 * aac.memoryBudget is set, categories are only read as they are opened,
+	 * keeping about that many bytes of them in memory. If the system property
+	 * aac.journal is true, every add is saved to a journal next to the file,
+	 * and saving folds the journal into the file itself. If the system property
+	 * aac.reload is true, changes made to the files while the AAC is running
+	 * are applied to it (except to a text file read lazily by aac.memoryBudget)
+	 * @param filenames the names of the files that contain the images and text
+	 * that will be in the AAC
+	 * @throws IOException if a file cannot be read or is not formatted correctly
 	 */
-	public AAC(String filename) {
-		this.aacMappings = new AACMappings(filename);
+	public AAC(List<String> filenames) throws IOException {
+		Long memoryBudget = Long.getLong("aac.memoryBudget");
+		if (filenames.size() > 1) {
+			this.aacMappings = new AACMappings(filenames);
+		} else if (memoryBudget == null) {
+			this.aacMappings = new AACMappings(filenames.get(0));
+		} else {
+			this.aacMappings = new AACMappings(filenames.get(0), memoryBudget);
+		}
+		// Saves (and compactions of the journal) are written in the background and
+		// reported back on the event thread
+		MappingsSaver.Listener saveListener = new MappingsSaver.Listener() {
+			public void saved(String savedFile) {
+				System.out.println("Saved to " + savedFile);
+			}
+
+			public void saveFailed(String savedFile, IOException e) {
+				System.out.println("Error: Could not save to " + savedFile + ": " + e.getMessage());
+			}
+		};
+		if (filenames.size() == 1 && Boolean.getBoolean("aac.journal")) {
+			this.journal = MappingsJournal.open(filenames.get(0), this.aacMappings,
+					saveListener, SwingUtilities::invokeLater);
+		}
+		if (Boolean.getBoolean("aac.reload")) {
+			if (filenames.size() == 1 && memoryBudget != null
+					&& !CompiledMappings.isCompiled(filenames.get(0))) {
+				// Unread categories are read from where they were when the file was indexed,
+				// which an edit moves
+				System.out.println("Error: aac.reload cannot be used with aac.memoryBudget. "
+						+ filenames.get(0) + " will not be reloaded.");
+			} else {
+				this.reloader = new MappingsReloader(this.aacMappings, filenames,
+						SwingUtilities::invokeLater, this::reloaded);
+			}
+		}
+		if (synthesizer != null) {
+			this.audioCache = openAudioCache();
+			// A tap can cut off what is being said (aac.speech.interrupt), and a
+			// tap on an item already being said is dropped unless aac.speech.dropDuplicates is false
+			this.speech = new SpeechQueue(synthesizer, this.audioCache, SpeechQueue.DEFAULT_CAPACITY,
+					Boolean.getBoolean("aac.speech.interrupt"),
+					!"false".equals(System.getProperty("aac.speech.dropDuplicates")));
+		}
+		this.saver = new MappingsSaver(saveListener, SwingUtilities::invokeLater);
+		// Finish saving before the program exits
+		MappingsJournal journal = this.journal;
+		MappingsSaver saver = this.saver;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			saver.close();
+			if (journal != null) {
+				try {
+					journal.close();
+				}
+				catch (IOException e) {
+					System.out.println("Error: " + e.getMessage());
+				}
+			}
+		}));
+		ThumbnailCache thumbnails = openThumbnails();
+		this.imageCache = new ImageCache(ImageCache.DEFAULT_BUDGET, true, thumbnails);
+		this.iconCache = new ImageCache(ImageCache.DEFAULT_BUDGET, false);
+		this.prefetcher = new ImagePrefetcher(this.imageCache,
+				Math.min(2, Runtime.getRuntime().availableProcessors()));
 		this.images = this.aacMappings.getImageLocs();
 		this.startIndex = 0;
 		this.endIndex = Math.min(NUM_ACROSS*NUM_DOWN, this.images.length);
 		frame=new JFrame();
 		frame.setPreferredSize(new Dimension(500,500));
 		loadImages(NUM_ACROSS,NUM_DOWN);
+		prefetch();
+		if (thumbnails != null) {
+			// Make the thumbnails of every image not yet made, in the background (listing
+			// them there too, from a snapshot of the mappings, since there may be many)
+			AACMappings snapshot = this.aacMappings.snapshot();
+			String[] categoryImages = this.images;
+			thumbnails.makeAll(() -> {
+				ArrayList<String> allImages = new ArrayList<String>(List.of(categoryImages));
+				for (String categoryImage : categoryImages) {
+					allImages.addAll(List.of(snapshot.getLoadedImageLocs(categoryImage)));
+				}
+				return allImages;
+			});
+		}
+		if (this.audioCache != null) {
+			// Synthesize every item's text in the background, and each item added
+			warmAudioCache();
+			this.aacMappings.addListener(this.audioCache);
+		}
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.pack(); 
 		frame.setVisible(true);
@@ -59,68 +188,95 @@ public class AAC implements ActionListener {
 	}
 
 	/**
-	 * Loads the images in the screen in a width by length grid
+	 * Shows the current page of images in a width by length grid. The grid's
+	 * buttons are made once; after that only the cells whose image (or the
+	 * image's file) changed are updated (and so repainted). Only the cells
+	 * with an image are in the grid, so a short last page is laid out as
+	 * if its images were all there were
 	 * @param width the number of images across to display
 	 * @param length the number of images down to display
 	 */
 	public void loadImages(int width, int length) {
+		if (this.cells == null || this.cells.length != width*length) {
+			buildGrid(width, length);
+		}
+
+		int currImage = startIndex;
+		int shown = 0;
+		for (int i = 0; i < this.cells.length; i++, currImage++) {
+			String image = (currImage < this.images.length) ? this.images[currImage] : null;
+			// (The cache gives back the same icon until the file changes)
+			ImageIcon icon = (image == null) ? null : this.imageCache.get(image);
+			if (image != null) {
+				shown++;
+			}
+			if (icon == this.cellIcons[i]
+					&& (image == null ? this.cellImages[i] == null : image.equals(this.cellImages[i]))) {
+				continue;
+			}
+			if (image != null) {
+				this.cells[i].setIcon(icon);
+				this.cells[i].setActionCommand(image);
+			}
+			this.cellImages[i] = image;
+			this.cellIcons[i] = icon;
+		}
+
+		// The cells shown always come first, so add or remove cells at the end
+		int inGrid = this.grid.getComponentCount();
+		while (this.grid.getComponentCount() > shown) {
+			this.grid.remove(this.grid.getComponentCount() - 1);
+		}
+		while (this.grid.getComponentCount() < shown) {
+			this.grid.add(this.cells[this.grid.getComponentCount()]);
+		}
+		if (inGrid != shown) {
+			this.grid.revalidate();
+			this.grid.repaint();
+		}
+
+		//if on page 2+, show back button; if have later pages, show next button
+		this.backArrow.setVisible(startIndex > 0);
+		this.nextArrow.setVisible(endIndex < images.length);
+	}
+
+	/**
+	 * Makes the buttons of the screen, in a width by length grid, with
+	 * options to go to the home screen, save, and add above it, and back
+	 * and next buttons beside it
+	 * @param width the number of images across
+	 * @param length the number of images down
+	 */
+	private void buildGrid(int width, int length) {
 		Container pane = frame.getContentPane();
 		pane.removeAll();
 
 		//add options to go to home screen
 		JPanel panel1 = new JPanel();
 		panel1.setLayout(new GridLayout(1,3));
-
-		JButton home = new JButton(new ImageIcon("img/home.png"));
-		home.setActionCommand("");
-		home.addActionListener(this);
-		panel1.add(home);
-		JButton save = new JButton(new ImageIcon("img/save.png"));
-		save.setActionCommand("save");
-		save.addActionListener(this);
-		panel1.add(save);
-		JButton add = new JButton(new ImageIcon("img/plus.png"));
-		add.setActionCommand("add");
-		add.addActionListener(this);
-		panel1.add(add);
-
+		panel1.add(makeButton("img/home.png", ""));
+		panel1.add(makeButton("img/save.png", "save"));
+		panel1.add(makeButton("img/plus.png", "add"));
 		pane.add(panel1, BorderLayout.PAGE_START);
 
+		this.backArrow = makeButton("img/back-to.png", "back");
+		pane.add(this.backArrow, BorderLayout.LINE_START);
 
-		//if on page 2+, add back button
-		if(startIndex > 0) {
-			JButton backArrow = new JButton(new ImageIcon("img/back-to.png"));
-			backArrow.setActionCommand("back");
-			backArrow.addActionListener(this);
-			pane.add(backArrow, BorderLayout.LINE_START);
+		//make a button for each cell (loadImages sets the images, and puts the cells
+		//with one in the grid)
+		this.grid = new JPanel();
+		this.grid.setLayout(new GridLayout(width,length));
+		this.cells = new JButton[width*length];
+		this.cellImages = new String[width*length];
+		this.cellIcons = new ImageIcon[width*length];
+		for (int i = 0; i < this.cells.length; i++) {
+			this.cells[i] = new JButton();
+			this.cells[i].addActionListener(this);
 		}
+		pane.add(this.grid,BorderLayout.CENTER);
 
-		//add images
-		JPanel panel = new JPanel();
-		panel.setLayout(new GridLayout(width,length)); 
-		int currImage = startIndex;
-		for(int y=0; y<length; y++){
-			for(int x=0; x<width; x++){
-				if(currImage < this.images.length) {
-					ImageIcon img = new ImageIcon(images[currImage]);
-					JButton button = new JButton(img);
-					button.setActionCommand(images[currImage]);
-					button.addActionListener(this);
-					panel.add(button); 
-					currImage++;
-
-				}
-			}
-		}
-		pane.add(panel,BorderLayout.CENTER);
-
-		//if have later pages, add next button
-		if(endIndex < images.length) {
-			JButton nextArrow = new JButton(new ImageIcon("img/next.png"));
-			nextArrow.setActionCommand("next");
-			nextArrow.addActionListener(this);
-			pane.add(nextArrow,BorderLayout.LINE_END);
-		}
+		this.nextArrow = makeButton("img/next.png", "next");
+		pane.add(this.nextArrow,BorderLayout.LINE_END);
 
 		JLabel ack = new JLabel("All provided icons are from icons8: icons8.com");
 		pane.add(ack,BorderLayout.PAGE_END);
@@ -128,6 +284,19 @@ public class AAC implements ActionListener {
 		pane.requestFocusInWindow();
 	}
 
+	/**
+	 * Makes a button that shows an image and sends an action command to this
+	 * @param image the location of the image
+	 * @param actionCommand the action command
+	 * @return the button
+	 */
+	private JButton makeButton(String image, String actionCommand) {
+		JButton button = new JButton(this.iconCache.get(image));
+		button.setActionCommand(actionCommand);
+		button.addActionListener(this);
+		return button;
+	}
+
 	public static void main(String[] args) {
 
 		try {
@@ -152,7 +321,100 @@ public class AAC implements ActionListener {
 		catch (Exception e) {
 			e.printStackTrace();
 		}
-		AAC aac = new AAC("AACMappings.txt");
+		try {
+			// The mappings files (text, or compiled by CompiledMappings) can be given as arguments
+			AAC aac = new AAC(args.length > 0 ? List.of(args) : List.of("AACMappings.txt"));
+		}
+		catch (NoSuchFileException e) {
+			System.out.println("Error: The file " + e.getFile() + " was not found.");
+			System.exit(1);
+		}
+		catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+			System.exit(3);
+		}
+	}
+
+	/**
+	 * Opens the directory of thumbnails (from the system property aac.thumbnails,
+	 * or ~/.cache/aac/thumbnails)
+	 * @return the thumbnail cache, or null if the directory cannot be made
+	 */
+	private static ThumbnailCache openThumbnails() {
+		String directory = System.getProperty("aac.thumbnails",
+				Path.of(System.getProperty("user.home"), ".cache", "aac", "thumbnails").toString());
+		try {
+			return new ThumbnailCache(Path.of(directory), THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+		}
+		catch (IOException e) {
+			System.out.println("Error: Could not make " + directory + ", so images are not scaled: "
+					+ e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Opens a cache of texts synthesized ahead of time by the FreeTTS voice
+	 * named by the system property aac.voice (kevin16 if it is not set)
+	 * @return the audio cache, or null if there is no such voice
+	 */
+	private static AudioCache openAudioCache() {
+		try {
+			return new AudioCache(System.getProperty("aac.voice", "kevin16"));
+		}
+		catch (IOException e) {
+			System.out.println("Error: " + e.getMessage() + ", so texts are synthesized when tapped");
+			return null;
+		}
+	}
+
+	/**
+	 * Synthesizes, in the background, the texts of the items of every
+	 * category in memory that have not been synthesized
+	 */
+	private void warmAudioCache() {
+		this.audioCache.warm(this.aacMappings.getLoadedTexts());
+	}
+
+	/**
+	 * Starts decoding, in the background, the images that are likely to be
+	 * shown next: the next page, and (on the home page) the first page of
+	 * each category shown
+	 */
+	private void prefetch() {
+		int pageSize = NUM_ACROSS*NUM_DOWN;
+		ArrayList<String> upcoming = new ArrayList<String>();
+		for (int i = this.endIndex; i < Math.min(this.endIndex + pageSize, this.images.length); i++) {
+			upcoming.add(this.images[i]);
+		}
+		if (this.aacMappings.getCurrentCategory().equals("")) {
+			for (int i = this.startIndex; i < this.endIndex; i++) {
+				String[] items = this.aacMappings.getLoadedImageLocs(this.images[i]);
+				for (int j = 0; j < Math.min(pageSize, items.length); j++) {
+					upcoming.add(items[j]);
+				}
+			}
+		}
+		this.prefetcher.prefetch(upcoming);
+	}
+
+	/**
+	 * Shows the changes made by reloading a mappings file, staying in the same
+	 * category (unless it was removed) and on the same page (if it is still there)
+	 */
+	private void reloaded() {
+		this.images = this.aacMappings.getImageLocs();
+		if (this.startIndex >= this.images.length) {
+			// Go to the last page instead
+			int pageSize = NUM_ACROSS*NUM_DOWN;
+			this.startIndex = Math.max(0, (this.images.length - 1) / pageSize * pageSize);
+		}
+		this.endIndex = Math.min(this.startIndex + NUM_ACROSS*NUM_DOWN, this.images.length);
+		loadImages(NUM_ACROSS,NUM_DOWN);
+		prefetch();
+		if (this.audioCache != null) {
+			warmAudioCache();
+		}
 	}
 
 	/**
@@ -172,7 +434,14 @@ public class AAC implements ActionListener {
 			this.endIndex = Math.min(endIndex + NUM_ACROSS*NUM_DOWN, this.images.length);
 		}
 		else if(actionCommand.equals("save")) {
-			this.aacMappings.writeToFile("AACMappingsNew.txt");
+			if (this.journal != null) {
+				// Every add is already in the journal; fold it into the file in the background
+				// (how it went is reported like any other save)
+				this.journal.compact();
+			}
+			else {
+				this.saver.save(this.aacMappings, "AACMappingsNew.txt");
+			}
 			this.images = this.aacMappings.getImageLocs();
 			this.startIndex = 0;
 			this.endIndex = Math.min(NUM_ACROSS*NUM_DOWN, this.images.length);
@@ -201,19 +470,17 @@ public class AAC implements ActionListener {
 				this.endIndex = Math.min(NUM_ACROSS*NUM_DOWN, this.images.length);
 			}
 			else {
-				try {
-					String toSpeak = this.aacMappings.getText(actionCommand);
-					System.out.println("Spoke: "+toSpeak);
-					synthesizer.speakPlainText(toSpeak, null);
-					synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
+				String toSpeak = this.aacMappings.getText(actionCommand);
+				if (this.speech == null) {
+					System.out.println("Error: There is no synthesizer to speak: "+toSpeak);
 				}
-				catch (Exception e1) {
-					e1.printStackTrace();
+				else if (this.speech.speak(toSpeak)) {
+					System.out.println("Queued: "+toSpeak);
 				}
 			}
 		}
 		loadImages(NUM_ACROSS,NUM_DOWN);
-
+		prefetch();
 	}
 
 }
\ No newline at end of file
@@ -1,4 +1,8 @@
+import java.util.ArrayList;
+import java.util.Collection;
+
 import structures.AssociativeArray;
+import structures.KVPair;
 import structures.KeyNotFoundException;
 
 /**
@@ -14,6 +18,8 @@ public class AACCategory {
 
   AssociativeArray<String, String> category;
   String categoryName;
+  // The AACMappings that may change it in place (see AACMappings.snapshot)
+  Object owner;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -29,6 +35,21 @@ public class AACCategory {
     this.categoryName = name;
   } // AACCategory​(String)
 
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Creates a copy of this category, which does not change when this one does
+   * 
+   * @return the copy
+   */
+  public AACCategory clone() {
+    AACCategory clonedCategory = new AACCategory(this.categoryName);
+    clonedCategory.category = this.category.clone();
+    return clonedCategory;
+  } // clone()
+
   // +----------------+----------------------------------------------
   // | Public Methods |
   // +----------------+
@@ -43,6 +64,36 @@ public class AACCategory {
     this.category.set(imageLoc, text);
   } // addItem(String, String)
   
+  /**
+   * Removes the mapping of imageLoc from the category (if there is one).
+   * 
+   * @param imageLoc the location of the image to remove
+   */
+  public void removeItem(String imageLoc) {
+    this.category.remove(imageLoc);
+    // Give back the space of a category that has lost most of its items
+    this.category.trimIfSparse();
+  } // removeItem(String)
+
+  /**
+   * Adds all the mappings of image locs to texts to the category, making room
+   * for them first. Later mappings for the same imageLoc win.
+   * 
+   * @param items the image locations and the texts they map to
+   * @return the image locations that were not in the category before (each once)
+   */
+  public ArrayList<String> addItems(Collection<KVPair<String, String>> items) {
+    ArrayList<String> added = new ArrayList<String>();
+    this.category.ensureCapacity(this.category.size() + items.size());
+    for (KVPair<String, String> item : items) {
+      if (!this.category.containsKey(item.getKey())) {
+        added.add(item.getKey());
+      } // if
+      this.category.set(item.getKey(), item.getValue());
+    } // for
+    return added;
+  } // addItems(Collection<KVPair<String, String>>)
+  
   /**
    * Returns the name of the category
    * 
@@ -74,15 +125,25 @@ public class AACCategory {
    * @return true if it is in the category, false otherwise
    */
   public boolean hasImage(String imageLoc) {
-    return this.category.hasKey(imageLoc);
+    return this.category.containsKey(imageLoc);
   } // hasImage(String)
 
   /**
-   * the array of image locations
+   * the array of image locations, in order (with no holes, even after items are removed)
    * 
    * @return the array of image locations
    */
   public String[] getImages() {
-    return this.category.getKeysForAAC();
+    return this.category.keys().toArray(new String[this.category.size()]);
   } // getImages()
+
+  /**
+   * the image locations and their texts, in the same order as getImages,
+   * without copying them
+   * 
+   * @return a read-only view of the image locations and their texts
+   */
+  public Collection<KVPair<String, String>> getItems() {
+    return this.category.entries();
+  } // getItems()
 } // class AACCategory
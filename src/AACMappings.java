@@ -1,13 +1,17 @@
 import structures.AssociativeArray;
-import structures.KeyNotFoundException;
+import structures.KVPair;
+import structures.PersistentAssociativeArray;
 import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.BufferedReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Represents all the mappings for a home page of items that should be displayed
@@ -16,6 +20,16 @@ import java.io.File;
  * @author Catie Baker
  */
 public class AACMappings {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * About how many bytes an item takes up, not counting the characters of its image
+   * and text (two strings and their slots in an AACCategory).
+   */
+  static final int ITEM_BYTES = 112;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -23,9 +37,70 @@ public class AACMappings {
   // Home page (categories' images and names)
   AACCategory categoryImgsToCategoryNames;
   // Categories' items (images and text)
-  AssociativeArray<String, AACCategory> categoryNamesToCategoryItems; 
+  PersistentAssociativeArray<String, AACCategory> categoryNamesToCategoryItems; 
+  // Reverse index of the home page (category names to categories' images)
+  PersistentAssociativeArray<String, String> categoryNamesToCategoryImgs;
+  // Every item image, to how many categories it is in
+  PersistentAssociativeArray<String, Integer> itemImgsToCategoryCounts;
+  // Categories whose items have not been read yet, to where their items are in itemSource
+  PersistentAssociativeArray<String, Integer> unreadCategories;
+  // Categories read then evicted, to where their items are in itemSource
+  PersistentAssociativeArray<String, Integer> evictedCategories;
+  // Categories read from itemSource and not changed since, which may be evicted
+  AssociativeArray<String, ReadCategory> evictableCategories;
+  // Where the items of unread categories come from (null if the whole file was read at once)
+  ItemSource itemSource;
+  // About how many bytes the items of evictable categories take up, and how many they may
+  long residentBytes;
+  long memoryBudget;
+  // Counts uses of categories, to find the least recently used one
+  long uses;
+  // Told about every category and item that is added
+  ArrayList<Listener> listeners;
+  // The home page and the categories owned by anything else are shared with a snapshot,
+  // so they are copied before they are changed (see writableCategory)
+  Object owner;
   String currentCategory;
 
+  // +------------+--------------------------------------------------
+  // | Interfaces |
+  // +------------+
+
+  /**
+   * Somewhere the items of a category can be read from when they are first needed.
+   */
+  interface ItemSource {
+    /**
+     * Reads the items of the category at location, in order, into items
+     * 
+     * @param location where the category's items are
+     * @param items where to put the item images and texts
+     */
+    void readItems(int location, ArrayList<KVPair<String, String>> items);
+  } // interface ItemSource
+
+  /**
+   * Something to tell about every category and item that is successfully added.
+   */
+  public interface Listener {
+    /**
+     * Called after a category is added onto the home page
+     * 
+     * @param imageLoc the location of the category's image
+     * @param name the name of the category
+     */
+    void categoryAdded(String imageLoc, String name);
+
+    /**
+     * Called after an item is added into a category
+     * 
+     * @param categoryName the name of the category
+     * @param imageLoc the location of the item's image
+     * @param text the text of the item
+     */
+    void itemAdded(String categoryName, String imageLoc, String text);
+  } // interface Listener
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -37,51 +112,152 @@ public class AACMappings {
    * @pre The file exists
    * @pre The file is formatted as the text location of the category followed by the text 
    * name of the category and then one line per item in the category that starts with > \
-   * and then has the file name and text of that image
+   * and then has the file name and text of that image (or is that file compiled by 
+   * CompiledMappings, in which case each category's items are only read when first needed)
    * @post all images and their associated texts load in properly on the AAC GUI
+   * @throws MappingFormatException if a line of the file is not formatted correctly
+   *         (with the line and column of the problem)
+   * @throws IOException if the file cannot be read
    */
-  public AACMappings(String filename) {
-    // has to parse file for info
-    PrintWriter pen = new PrintWriter(System.out, true);
+  public AACMappings(String filename) throws IOException {
+    this(filename, false, Long.MAX_VALUE);
+  } // AACMappings(String)
+
+  /**
+   * Reads in the home page of the file, but only reads the items of a category the first 
+   * time it is opened. Once the items read take up more than about memoryBudget bytes, 
+   * the least recently used categories that have not been changed are evicted (and read 
+   * again if they are opened again). Should also start the AAC on the home screen
+   * 
+   * @param filename the mappings file (formatted as for AACMappings(String))
+   * @param memoryBudget about how many bytes the items of unchanged categories may take up
+   * @throws MappingFormatException if a line of the file is not formatted correctly
+   *         (with the line and column of the problem)
+   * @throws IOException if the file cannot be read
+   */
+  public AACMappings(String filename, long memoryBudget) throws IOException {
+    this(filename, true, memoryBudget);
+  } // AACMappings(String, long)
+
+  /**
+   * Reads in several files (e.g. a shared vocabulary, then a classroom's, then a 
+   * student's), parsing them in parallel, and combines them. The files are combined in 
+   * the order given, whatever order they finish parsing in:
+   * - Categories with the same name are combined: the home page keeps the image (and 
+   *   place) the category first had, and the items of later files are added after the 
+   *   items already there. If an item's image is already in the category, the later 
+   *   file's text wins.
+   * - A category whose image is already used by a category with another name is left 
+   *   out (with an error message), as when adding a category from the interface.
+   * Should also start the AAC on the home screen
+   * 
+   * @param filenames the mappings files (text or compiled), in order of precedence
+   * @throws MappingFormatException if a line of a file is not formatted correctly
+   *         (with the line and column of the problem)
+   * @throws IOException if a file cannot be read
+   */
+  public AACMappings(List<String> filenames) throws IOException {
+    this(Long.MAX_VALUE);
     
-    try {  
-      // Reads from the specified file
-      BufferedReader reader = new BufferedReader(new FileReader(filename));
-      this.categoryImgsToCategoryNames = new AACCategory(""); // "" for home page
-      this.categoryNamesToCategoryItems = new AssociativeArray<String,AACCategory>();
-      String line;
-      String currentReadCategory = ""; // for later when adding items to the category
-
-      // Keep looping while the end of file hasn't been reached
-      while((line = reader.readLine()) != null) { 
-        String[] words = line.split(" ");
-
-        // If the words on each line in the file is less than 2, then that means either the 
-        // image, text, or both are missing in a line defining the category or an item
-        if (words.length < 2) {
-          pen.printf("Error: Format of file input in %s was wrong. " + 
-              "Please fix the text formatting of the file before running again.\n", filename);
-          System.exit(3);
-        } // if
+    // Parses every file at once on the fork-join pool
+    ArrayList<ForkJoinTask<ParsedFile>> parses = new ArrayList<ForkJoinTask<ParsedFile>>();
+    for (String filename : filenames) {
+      parses.add(ForkJoinPool.commonPool().submit(() -> ParsedFile.parse(filename)));
+    } // for
 
-        // This line has category img and category name
-        if (line.charAt(0) != '>') { 
-          currentReadCategory = addCategoryFromFileToMappings(words);
-        } else { 
-          // This line has item img and item text
-          addItemFromFileToMappings(words, currentReadCategory);
-        } // if/else
-      } // while
-      reader.close();
-    } catch (FileNotFoundException e) {// if the file wasn't found
-      pen.printf("Error: The file %s was not found.\n", filename);
-      System.exit(1);
-    } catch (IOException e) { // some other input/output error
-      pen.println(e.getMessage());
-      System.exit(3);
-    } // try/catch
+    // then combines them in order
+    PrintWriter pen = new PrintWriter(System.out, true);
+    for (ForkJoinTask<ParsedFile> parse : parses) {
+      ParsedFile file;
+      try {
+        file = parse.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading mappings files");
+      } catch (ExecutionException e) {
+        // Finds the IOException (the pool may have wrapped it)
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } // if
+        } // for
+        throw new IOException(e.getCause());
+      } // try/catch
+      this.merge(file, pen);
+    } // for
+  } // AACMappings(List<String>)
+
+  /**
+   * Copies original, sharing its home page and categories (see snapshot)
+   */
+  private AACMappings(AACMappings original) {
+    this.categoryImgsToCategoryNames = original.categoryImgsToCategoryNames;
+    this.categoryNamesToCategoryItems = original.categoryNamesToCategoryItems.snapshot();
+    this.categoryNamesToCategoryImgs = original.categoryNamesToCategoryImgs.snapshot();
+    this.itemImgsToCategoryCounts = original.itemImgsToCategoryCounts.snapshot();
+    this.unreadCategories = original.unreadCategories.snapshot();
+    this.evictedCategories = original.evictedCategories.snapshot();
+    // Nothing is evicted from a copy
+    this.evictableCategories = new AssociativeArray<String, ReadCategory>();
+    this.itemSource = original.itemSource;
+    this.memoryBudget = Long.MAX_VALUE;
+    this.listeners = new ArrayList<Listener>();
+    this.owner = new Object();
+    this.currentCategory = original.currentCategory;
+  } // AACMappings(AACMappings)
+
+  /**
+   * Reads in the file, either all at once or (if lazy, or if the file is compiled) 
+   * category by category as they are opened
+   */
+  private AACMappings(String filename, boolean lazy, long memoryBudget) throws IOException {
+    this(memoryBudget);
+    if (CompiledMappings.isCompiled(filename)) {
+      // Reads only the home page; the items are read category by category later
+      CompiledMappings compiled = new CompiledMappings(filename);
+      for (int i = 0; i < compiled.categories(); i++) {
+        this.addUnreadCategory(compiled.categoryImage(i), compiled.categoryName(i), i);
+      } // for
+      this.itemSource = compiled;
+    } else if (lazy) {
+      // Reads only the home page, noting where each category's items start in the file
+      this.itemSource = AACMappingsParser.index(filename, new AACMappingsParser.Handler() {
+        public void category(String imageLoc, String name, int itemsLocation) {
+          addUnreadCategory(imageLoc, name, itemsLocation);
+        } // category(String, String, int)
+
+        public void category(String imageLoc, String name) {
+          // Never called: category(String, String, int) is called instead
+        } // category(String, String)
+
+        public void item(String imageLoc, String text) {
+          // Never called: items are not read when indexing
+        } // item(String, String)
+      });
+    } else {
+      // Parses the specified file, adding each category (and its items) as it is read
+      FileLoader loader = new FileLoader();
+      AACMappingsParser.parse(filename, loader);
+      loader.finish();
+    } // if/else
+  } // AACMappings(String, boolean, long)
+
+  /**
+   * Creates empty mappings, on the home page
+   */
+  private AACMappings(long memoryBudget) {
+    this.owner = new Object();
+    this.categoryImgsToCategoryNames = this.newCategory(""); // "" for home page
+    this.categoryNamesToCategoryItems = new PersistentAssociativeArray<String,AACCategory>();
+    this.categoryNamesToCategoryImgs = new PersistentAssociativeArray<String, String>();
+    this.itemImgsToCategoryCounts = new PersistentAssociativeArray<String, Integer>();
+    this.unreadCategories = new PersistentAssociativeArray<String, Integer>();
+    this.evictedCategories = new PersistentAssociativeArray<String, Integer>();
+    this.evictableCategories = new AssociativeArray<String, ReadCategory>();
+    this.memoryBudget = memoryBudget;
+    this.listeners = new ArrayList<Listener>();
     this.currentCategory = ""; // on home page
-  } // AACMappings()
+  } // AACMappings(long)
 
   // +----------------+----------------------------------------------
   // | Public Methods |
@@ -132,6 +308,43 @@ public class AACMappings {
     } // if/else
   } // getImageLocs()
 
+  /**
+   * Provides an array of all the images in the category whose image is categoryImageLoc,
+   * without going into the category, and only if its items are already in memory (so 
+   * nothing is read)
+   * 
+   * @param categoryImageLoc the image of a category on the home page
+   * @return the array of images in the category, or an empty array if the category's 
+   *         items are not in memory (or categoryImageLoc is not a category's image)
+   */
+  public String[] getLoadedImageLocs(String categoryImageLoc) {
+    if (this.categoryImgsToCategoryNames.hasImage(categoryImageLoc)) {
+      String categoryName = this.categoryImgsToCategoryNames.getText(categoryImageLoc);
+      AACCategory categoryItems = 
+          this.categoryNamesToCategoryItems.getOrDefault(categoryName, null);
+      if (categoryItems != null) {
+        return categoryItems.getImages();
+      } // if
+    } // if
+    return new String[0];
+  } // getLoadedImageLocs(String)
+
+  /**
+   * Provides the texts of the items of every category whose items are in memory
+   * (so nothing is read), without going into any category
+   *
+   * @return the texts, a category's together
+   */
+  public ArrayList<String> getLoadedTexts() {
+    ArrayList<String> texts = new ArrayList<String>();
+    for (AACCategory categoryItems : this.categoryNamesToCategoryItems.values()) {
+      for (KVPair<String, String> item : categoryItems.getItems()) {
+        texts.add(item.getValue());
+      } // for
+    } // for
+    return texts;
+  } // getLoadedTexts()
+
   /**
    * Resets the current category of the AAC back to the default category
    */
@@ -162,18 +375,11 @@ public class AACMappings {
       result = true; // Image represents a category
     } else { // Otherwise, the image should be an item image
       // Still need to check if imageLoc even exists as an item image
-      String[] categories = this.categoryNamesToCategoryItems.getKeysForAAC();
-      boolean existsAsItem = false;
-
-      // For each category, iterate through all the item images and check if imageLoc
-      // is one of them
-      for (String category : categories) {
-        if (this.getExceptionCatching(category).hasImage(imageLoc)) {
-          existsAsItem = true;
-        } // if
-      } // for
-
-      if (!existsAsItem) { // When imageLoc is not part of AAC Mappings
+      // (Items of categories that have not been read yet are not known, so only 
+      // complain once every category has been read)
+      if (!this.itemImgsToCategoryCounts.containsKey(imageLoc) 
+          && this.unreadCategories.size() == 0) { 
+        // When imageLoc is not part of AAC Mappings
         PrintWriter pen = new PrintWriter(System.out, true);
         pen.printf("Error: %s is not an image representing a text to speak nor " + 
                    "is it an image representing a category.\n", imageLoc);
@@ -200,26 +406,8 @@ public class AACMappings {
 
     try {
       // Writes the current AAC mappings to the specified file 
-      BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-      AACCategory categories = this.categoryImgsToCategoryNames;
-      String[] categoryImgs = categories.getImages();
-
-      // For each category image, find the category name and write the category image
-      // and the category name to the file 
-      for (String categoryImg : categoryImgs) {
-        String categoryName = categories.getText(categoryImg);
-        writer.write(categoryImg + " " + categoryName + "\n");
-
-        AACCategory itemsInCategory = this.getExceptionCatching(categoryName);
-        String[] itemImages = itemsInCategory.getImages();
-
-        // For each item image in the same category, find the item text and write the 
-        // item image and the item text to the file with a ">" at the beginning of the line
-        for (String itemImage : itemImages) {
-          String itemName = itemsInCategory.getText(itemImage);
-          writer.write(">" + itemImage + " " + itemName + "\n");
-        } // for
-      } // for
+      BufferedWriter writer = new BufferedWriter(new FileWriter(filename), 1 << 16);
+      this.writeTo(writer);
       // closes writer
       writer.close(); 
     } catch (IOException e) {
@@ -227,6 +415,29 @@ public class AACMappings {
     } // try/catch
   } // writeToFile(String)
 
+  /**
+   * Writes the AAC mappings stored to out, in the same format as writeToFile, one piece 
+   * at a time (so no line is ever built as a string)
+   * 
+   * @param out where to write the AAC mappings
+   * @throws IOException if out cannot be written to
+   */
+  public void writeTo(Appendable out) throws IOException {
+    // For each category, write the category image and the category name
+    for (KVPair<String, String> category : this.categoryImgsToCategoryNames.getItems()) {
+      String categoryName = category.getValue();
+      out.append(category.getKey()).append(' ').append(categoryName).append('\n');
+
+      AACCategory itemsInCategory = this.getExceptionCatching(categoryName);
+
+      // For each item in the same category, write the item image and the item text
+      // with a ">" at the beginning of the line
+      for (KVPair<String, String> item : itemsInCategory.getItems()) {
+        out.append('>').append(item.getKey()).append(' ').append(item.getValue()).append('\n');
+      } // for
+    } // for
+  } // writeTo(Appendable)
+
   /**
    * Adds the mapping to the current category (or the default category if that is 
    * the current category)
@@ -237,7 +448,6 @@ public class AACMappings {
   public void add(String imageLoc, String text) {
     File imgFile = new File(imageLoc);
     PrintWriter pen = new PrintWriter(System.out, true);
-    String[] itemImageLocs = this.getImageLocs();
 
     // Edit file path of the image if needed (for portable code)
     imageLoc = editImageLoc(imageLoc);
@@ -245,20 +455,156 @@ public class AACMappings {
     if (!imgFile.exists()) { // imageLoc path is not valid 
       pen.printf("Error: %s, the image location, is not a valid path. " + 
           "Adding was not successful.\n", imageLoc);
-    } else if (this.currentCategory.equals("")) { 
-      addCategoryFromInterface(pen, imageLoc, text);
-    } else { 
-      addItemFromInterface(imageLoc, text, itemImageLocs, pen);
+    } else {
+      this.add(this.currentCategory, imageLoc, text, pen);
     } // if/else
   } // add(String, String)
 
+  /**
+   * Adds the mapping to the named category (or the home page if categoryName is ""), 
+   * without checking that the image exists (e.g. when replaying edits made earlier)
+   * 
+   * @param categoryName the name of the category, or "" for the home page
+   * @param imageLoc the location of the image
+   * @param text the text associated with the image
+   */
+  public void add(String categoryName, String imageLoc, String text) {
+    this.add(categoryName, editImageLoc(imageLoc), text, new PrintWriter(System.out, true));
+  } // add(String, String, String)
+
+  /**
+   * Adds a category onto the home page, or changes the image of the category if it is
+   * already there. Unlike add, listeners are not told (this is for changes that come 
+   * from a mappings file, not from the user).
+   * 
+   * @param imageLoc the location of the category's image
+   * @param name the name of the category
+   */
+  public void putCategory(String imageLoc, String name) {
+    String oldImageLoc = this.categoryNamesToCategoryImgs.getOrDefault(name, null);
+    if (imageLoc.equals(oldImageLoc)) {
+      return;
+    } else if (this.categoryImgsToCategoryNames.hasImage(imageLoc)) {
+      PrintWriter pen = new PrintWriter(System.out, true);
+      pen.printf("Error: %s, the image of category %s, is already the image of another " 
+          + "category. The category was not changed.\n", imageLoc, name);
+    } else if (oldImageLoc != null) {
+      this.homePage().removeItem(oldImageLoc);
+      this.homePage().addItem(imageLoc, name);
+      this.categoryNamesToCategoryImgs.set(name, imageLoc);
+    } else {
+      this.addCategoryFromFileToMappings(imageLoc, name);
+    } // if/else
+  } // putCategory(String, String)
+
+  /**
+   * Adds an item into a category, or changes its text if it is already there. Unlike 
+   * add, listeners are not told (this is for changes that come from a mappings file, 
+   * not from the user).
+   * 
+   * @param categoryName the name of the category (which must be in the mappings)
+   * @param imageLoc the location of the item's image
+   * @param text the text of the item
+   */
+  public void putItem(String categoryName, String imageLoc, String text) {
+    AACCategory categoryItems = this.writableCategory(categoryName);
+    if (categoryItems != null) {
+      if (!categoryItems.hasImage(imageLoc)) {
+        this.indexItem(imageLoc);
+      } // if
+      categoryItems.addItem(imageLoc, text);
+      // The category no longer matches what is in memory-mapped file, so it must stay
+      this.forgetReadCategory(categoryName);
+    } // if
+  } // putItem(String, String, String)
+
+  /**
+   * Removes an item from a category (if it is there)
+   * 
+   * @param categoryName the name of the category
+   * @param imageLoc the location of the item's image
+   */
+  public void removeItem(String categoryName, String imageLoc) {
+    AACCategory categoryItems = this.getExceptionCatching(categoryName);
+    if (categoryItems != null && categoryItems.hasImage(imageLoc)) {
+      this.writableCategory(categoryName).removeItem(imageLoc);
+      this.unindexItem(imageLoc);
+      this.forgetReadCategory(categoryName);
+    } // if
+  } // removeItem(String, String)
+
+  /**
+   * Removes a category, and its items, from the home page (if it is there). If it 
+   * is the current category, the AAC goes back to the home page.
+   * 
+   * @param categoryName the name of the category
+   */
+  public void removeCategory(String categoryName) {
+    String imageLoc = this.categoryNamesToCategoryImgs.getOrDefault(categoryName, null);
+    if (imageLoc == null) {
+      return;
+    } // if
+    // (Unread categories have no items in this.itemImgsToCategoryCounts, so need not be read)
+    this.unreadCategories.remove(categoryName);
+    AACCategory categoryItems = this.getExceptionCatching(categoryName);
+    if (categoryItems != null) {
+      for (String itemImageLoc : categoryItems.getImages()) {
+        this.unindexItem(itemImageLoc);
+      } // for
+    } // if
+    this.forgetReadCategory(categoryName);
+    this.categoryNamesToCategoryItems.remove(categoryName);
+    this.categoryNamesToCategoryImgs.remove(categoryName);
+    this.homePage().removeItem(imageLoc);
+    if (this.currentCategory.equals(categoryName)) {
+      this.reset();
+    } // if
+  } // removeCategory(String)
+
+  /**
+   * Makes a copy of the mappings as they are now, which does not change when these
+   * mappings do (so it can, e.g., be written out on another thread while these are 
+   * edited). Categories that have not been read are read by the copy from the same file.
+   * Takes O(1) time: the copy shares everything, and a category (or the home page) is
+   * only copied when one of the two first changes it.
+   * 
+   * @return the copy
+   */
+  public AACMappings snapshot() {
+    // Everything this owns is now shared with the copy
+    this.owner = new Object();
+    return new AACMappings(this);
+  } // snapshot()
+
+  /**
+   * Registers listener to be told about every category and item that is added from now on
+   * 
+   * @param listener what to tell
+   */
+  public void addListener(Listener listener) {
+    this.listeners.add(listener);
+  } // addListener(Listener)
+
   // +-----------------+---------------------------------------------
   // | Private Methods |
   // +-----------------+
 
   /**
-   * Retrieves the AACCategory of the specified category while resolving
-   * the exception thrown warning from the `get` method
+   * Adds the mapping (with an already edited image path) to the named category, or
+   * the home page if categoryName is ""
+   */
+  private void add(String categoryName, String imageLoc, String text, PrintWriter pen) {
+    if (categoryName.equals("")) { 
+      addCategoryFromInterface(pen, imageLoc, text);
+    } else if (!this.categoryNamesToCategoryImgs.containsKey(categoryName)) {
+      pen.printf("Error: %s is not a category. Adding was not successful.\n", categoryName);
+    } else { 
+      addItemFromInterface(categoryName, imageLoc, text, pen);
+    } // if/else
+  } // add(String, String, String, PrintWriter)
+
+  /**
+   * Retrieves the AACCategory of the specified category
    * 
    * @param category
    * @return AACCategory associated with category
@@ -266,63 +612,226 @@ public class AACMappings {
    * @post returns the AACCategory for specified category
    */
   private AACCategory getExceptionCatching(String category) {
-    try { 
-    // Return the AACCategory (contains info about the category's items) for the specified category
-      return this.categoryNamesToCategoryItems.get(category);
-    } catch (KeyNotFoundException knfe) {
-      // Does nothing b/c category is guaranteed to be a key of this.categoryNamesToCategoryItems,
-      // so KeyNotFoundException will never be caught here b/c as a helper fxn, the methods in 
-      // this class that invoke it ensure this fact
-      return null; // for the sake of returning something
-    } // try/catch
+    // Return the AACCategory (contains info about the category's items) for the specified
+    // category; null never comes back b/c the methods in this class that invoke this helper
+    // ensure category is a key of this.categoryNamesToCategoryItems (or of 
+    // this.unreadCategories, in which case its items are read now)
+    AACCategory categoryItems = this.categoryNamesToCategoryItems.getOrDefault(category, null);
+    if (categoryItems != null) {
+      ReadCategory read = this.evictableCategories.getOrDefault(category, null);
+      if (read != null) {
+        read.lastUse = ++this.uses;
+      } // if
+    } else if (this.unreadCategories.containsKey(category)) {
+      int location = this.unreadCategories.getOrDefault(category, -1);
+      this.unreadCategories.remove(category);
+      categoryItems = this.readCategory(category, location, false);
+    } else if (this.evictedCategories.containsKey(category)) {
+      int location = this.evictedCategories.getOrDefault(category, -1);
+      this.evictedCategories.remove(category);
+      categoryItems = this.readCategory(category, location, true);
+    } // if/else
+    return categoryItems;
   } // getExceptionCatching()
 
+  /**
+   * Retrieves the AACCategory of the specified category (as getExceptionCatching does)
+   * to change it, first copying it if it is shared with a snapshot
+   * 
+   * @param category the name of the category
+   * @return AACCategory associated with category, which only these mappings hold
+   */
+  private AACCategory writableCategory(String category) {
+    AACCategory categoryItems = this.getExceptionCatching(category);
+    if (categoryItems != null && categoryItems.owner != this.owner) {
+      categoryItems = categoryItems.clone();
+      categoryItems.owner = this.owner;
+      this.categoryNamesToCategoryItems.set(category, categoryItems);
+    } // if
+    return categoryItems;
+  } // writableCategory(String)
+
+  /**
+   * Retrieves the home page to change it, first copying it if it is shared with a snapshot
+   * 
+   * @return the home page, which only these mappings hold
+   */
+  private AACCategory homePage() {
+    if (this.categoryImgsToCategoryNames.owner != this.owner) {
+      this.categoryImgsToCategoryNames = this.categoryImgsToCategoryNames.clone();
+      this.categoryImgsToCategoryNames.owner = this.owner;
+    } // if
+    return this.categoryImgsToCategoryNames;
+  } // homePage()
+
+  /**
+   * Creates a new empty category that these mappings may change in place
+   * 
+   * @param categoryName the name of the category
+   * @return the category
+   */
+  private AACCategory newCategory(String categoryName) {
+    AACCategory categoryItems = new AACCategory(categoryName);
+    categoryItems.owner = this.owner;
+    return categoryItems;
+  } // newCategory(String)
+
+  /**
+   * Reads the items of a category that is not in memory from this.itemSource, then 
+   * evicts other categories if the items in memory are over budget
+   * 
+   * @param categoryName the name of the category
+   * @param location where the category's items are in this.itemSource
+   * @param indexed whether its items are already in this.itemImgsToCategoryCounts
+   *        (as an evicted category's are)
+   * @return the AACCategory holding the category's items
+   */
+  private AACCategory readCategory(String categoryName, int location, boolean indexed) {
+    AACCategory categoryItems = this.newCategory(categoryName);
+    this.categoryNamesToCategoryItems.set(categoryName, categoryItems);
+    ArrayList<KVPair<String, String>> items = new ArrayList<KVPair<String, String>>();
+    this.itemSource.readItems(location, items);
+
+    long bytes = 0;
+    for (KVPair<String, String> item : items) {
+      bytes += ITEM_BYTES + item.getKey().length() + item.getValue().length();
+    } // for
+    ArrayList<String> added = categoryItems.addItems(items);
+    if (!indexed) {
+      for (String imageLoc : added) {
+        this.indexItem(imageLoc);
+      } // for
+    } // if
+    this.evictableCategories.set(categoryName, new ReadCategory(location, bytes, ++this.uses));
+    this.residentBytes += bytes;
+    this.evictOverBudget(categoryName);
+    return categoryItems;
+  } // readCategory(String, int, boolean)
+
+  /**
+   * Evicts the least recently used categories that can be read again (other than
+   * keep and the current category) until the items in memory are within budget
+   * 
+   * @param keep the name of a category not to evict
+   */
+  private void evictOverBudget(String keep) {
+    while (this.residentBytes > this.memoryBudget) {
+      String coldest = null;
+      long coldestUse = Long.MAX_VALUE;
+      for (KVPair<String, ReadCategory> read : this.evictableCategories.entries()) {
+        String name = read.getKey();
+        if (read.getValue().lastUse < coldestUse && !name.equals(keep) 
+            && !name.equals(this.currentCategory)) {
+          coldest = name;
+          coldestUse = read.getValue().lastUse;
+        } // if
+      } // for
+      if (coldest == null) {
+        return; // Nothing else can be evicted
+      } // if
+      ReadCategory evicted = this.evictableCategories.getOrDefault(coldest, null);
+      this.forgetReadCategory(coldest);
+      this.categoryNamesToCategoryItems.remove(coldest);
+      // (its items stay in this.itemImgsToCategoryCounts, since they have not changed)
+      this.evictedCategories.set(coldest, evicted.location);
+    } // while
+  } // evictOverBudget(String)
+
+  /**
+   * Stops treating a category as one that can be evicted and read again (because it 
+   * has been evicted, changed, or replaced)
+   * 
+   * @param categoryName the name of the category
+   */
+  private void forgetReadCategory(String categoryName) {
+    ReadCategory read = this.evictableCategories.getOrDefault(categoryName, null);
+    if (read != null) {
+      this.residentBytes -= read.bytes;
+      this.evictableCategories.remove(categoryName);
+      this.evictableCategories.trimIfSparse();
+    } // if
+  } // forgetReadCategory(String)
+
+  /**
+   * Adds a category whose items have not been read yet onto the home page
+   * 
+   * @param categoryImgLoc the image of the category
+   * @param categoryName the name of the category
+   * @param location where the category's items are in this.itemSource
+   */
+  private void addUnreadCategory(String categoryImgLoc, String categoryName, int location) {
+    this.homePage().addItem(categoryImgLoc, categoryName);
+    this.categoryNamesToCategoryImgs.set(categoryName, categoryImgLoc);
+    // A later category with the same name replaces an earlier one
+    this.categoryNamesToCategoryItems.remove(categoryName);
+    this.unreadCategories.set(categoryName, location);
+  } // addUnreadCategory(String, String, int)
+
   /**
    * Adds category from a category line of an input AACMappings file 
    * into AACMappings
    * 
-   * @param words the words in a single line of the input mappings file
+   * @param categoryImgLoc the image of the category
+   * @param categoryName the name of the category
    * @return the current category being added
    */
-  private String addCategoryFromFileToMappings(String[] words) {
-    String categoryImgLoc = words[0];
-    String categoryName = words[1];
-
+  private String addCategoryFromFileToMappings(String categoryImgLoc, String categoryName) {
     // Adds the category's image and its name to the array of all categories (home page)
-    this.categoryImgsToCategoryNames.addItem(categoryImgLoc, categoryName);
+    this.homePage().addItem(categoryImgLoc, categoryName);
+    this.categoryNamesToCategoryImgs.set(categoryName, categoryImgLoc);
 
-    // Creates new category
-    AACCategory categoryItems = new AACCategory(categoryName);
+    // Creates new category (in place of any category with the same name)
+    this.unindexCategory(categoryName);
+    AACCategory categoryItems = this.newCategory(categoryName);
     // Adds new category to array of all categories
     this.categoryNamesToCategoryItems.set(categoryName, categoryItems);
 
     return categoryName;
-  } // addCategoryToMappings(String[])
+  } // addCategoryFromFileToMappings(String, String)
 
   /**
-   * Adds item from an item line of an input AACMappings file 
-   * into AACMappings
+   * Combines the categories and items of a parsed file into AACMappings (see 
+   * AACMappings(List<String>) for how)
    * 
-   * @param words the words in a single line of the input mappings file
-   * @param currentReadCategory the current category the item is being added into
+   * @param file the parsed file
+   * @param pen for printing
    */
-  private void addItemFromFileToMappings(String[] words, String currentReadCategory) {
-    // This line has item img and item text
-    String itemImgLoc = words[0].substring(1);
-    String itemName = "";
-
-    // Determine the item text:
-    // In case the item name is multiple words
-    for (int i = 1; i < words.length; i++) { 
-      itemName += words[i] + " ";
+  private void merge(ParsedFile file, PrintWriter pen) {
+    for (int i = 0; i < file.categoryNames.size(); i++) {
+      String categoryImgLoc = file.categoryImgs.get(i);
+      String categoryName = file.categoryNames.get(i);
+      if (!this.categoryNamesToCategoryImgs.containsKey(categoryName)) {
+        if (this.categoryImgsToCategoryNames.hasImage(categoryImgLoc)) {
+          pen.printf("Error: %s, the image of category %s in %s, is already the image of " 
+              + "another category. The category was left out.\n", 
+              categoryImgLoc, categoryName, file.filename);
+          continue;
+        } // if
+        this.addCategoryFromFileToMappings(categoryImgLoc, categoryName);
+      } // if
+      this.addItemsToCategory(file.categoryItems.get(i), categoryName);
     } // for
-    itemName = itemName.trim();
+  } // merge(ParsedFile, PrintWriter)
 
-    // Adds the item's image and name to the specified category in the array detailing 
-    // all categories' items
-    AACCategory categoryArr = this.getExceptionCatching(currentReadCategory);
-    categoryArr.addItem(itemImgLoc, itemName);
-  } // addItemToMappings(String[], String)
+  /**
+   * Adds all the items read for a category into AACMappings at once (so the 
+   * category only has to make room once), then clears the items
+   * 
+   * @param currentReadItems the items read for the category
+   * @param currentReadCategory the category the items are being added into
+   */
+  private void addItemsToCategory(ArrayList<KVPair<String, String>> currentReadItems, 
+      String currentReadCategory) {
+    if (!currentReadItems.isEmpty()) {
+      // Adds the items' images and names to the specified category in the array detailing 
+      // all categories' items
+      AACCategory categoryArr = this.writableCategory(currentReadCategory);
+      for (String imageLoc : categoryArr.addItems(currentReadItems)) {
+        this.indexItem(imageLoc);
+      } // for
+      currentReadItems.clear();
+    } // if
+  } // addItemsToCategory(ArrayList<KVPair<String, String>>, String)
 
   /**
    * Edits the slashes in the path of an image to work for Windows or Linux.
@@ -364,43 +873,40 @@ public class AACMappings {
       // the new category can be successfully added
 
       // Add a new category with specified name and image
-      this.categoryImgsToCategoryNames.addItem(imageLoc, text);
+      this.homePage().addItem(imageLoc, text);
+      this.categoryNamesToCategoryImgs.set(text, imageLoc);
       // and set up an AACCategory to put items of that category 
       // (for future item additions)
-      this.categoryNamesToCategoryItems.set(text, new AACCategory(text));
+      this.unindexCategory(text);
+      this.categoryNamesToCategoryItems.set(text, this.newCategory(text));
+      this.unreadCategories.remove(text);
+      this.evictedCategories.remove(text);
+      this.forgetReadCategory(text);
+      for (Listener listener : this.listeners) {
+        listener.categoryAdded(imageLoc, text);
+      } // for
     } // if/else
   } // addCategoryFromInterface(PrintWriter, String, String)
 
   /**
    * Adds an item into the appropriate category from the interface.
    * 
+   * @param categoryName the category to add the item into
    * @param imageLoc path of the image associated with the item
    * @param text text associated with the item
-   * @param itemImageLocs images in the currently location
    * @param pen for printing
    */
-  private void addItemFromInterface(String imageLoc, String text, String[] itemImageLocs, PrintWriter pen) {
-    boolean sameAsCategoryItemsImg = false;
+  private void addItemFromInterface(String categoryName, String imageLoc, String text, 
+      PrintWriter pen) {
+    AACCategory categoryAAC = this.getExceptionCatching(categoryName);
 
     // Trying to add an item (on category page):
     // Checking if imageLoc is a duplicate item image
-    for (String itemImageLoc : itemImageLocs) {
-      if (imageLoc.equals(itemImageLoc)) {
-        sameAsCategoryItemsImg = true;
-      } // if
-    } // for
+    boolean sameAsCategoryItemsImg = categoryAAC.hasImage(imageLoc);
     
     // Retrieving img for current category (for error-checking later)
-    String[] allCategoryImgs = this.categoryImgsToCategoryNames.getImages();
-    String currentCategoryImg = "";
-
-    // Loops through each category img to find which one is the current category's img 
-    // (according to if their names match)
-    for (String categoryImg : allCategoryImgs) {
-      if (this.categoryImgsToCategoryNames.getText(categoryImg).equals(this.currentCategory)) {
-        currentCategoryImg = categoryImg;
-      } // if
-    } // for
+    String currentCategoryImg = 
+        this.categoryNamesToCategoryImgs.getOrDefault(categoryName, "");
     
     // Error-checking (b/c some duplicate images (2 categories with the same img, an item in 
     // a category with the same img as the category its in, and two items in the same category
@@ -417,8 +923,145 @@ public class AACMappings {
       // successfully added
 
       // Add the specified text and image as an item to the category
-      AACCategory categoryAAC = this.getExceptionCatching(this.currentCategory);
-      categoryAAC.addItem(imageLoc, text);
+      this.writableCategory(categoryName).addItem(imageLoc, text);
+      this.indexItem(imageLoc);
+      // The category no longer matches what is in the file, so it must stay in memory
+      this.forgetReadCategory(categoryName);
+      for (Listener listener : this.listeners) {
+        listener.itemAdded(categoryName, imageLoc, text);
+      } // for
     } // if/else
-  } // addItemFromInterface(String, String, String[], PrintWriter)
-} // class AACMappings
\ No newline at end of file
+  } // addItemFromInterface(String, String, String, PrintWriter)
+
+  /**
+   * Records that an item image is in one more category (which it was not in before)
+   * 
+   * @param imageLoc path of the image associated with the item
+   */
+  private void indexItem(String imageLoc) {
+    this.itemImgsToCategoryCounts.set(imageLoc, 
+        this.itemImgsToCategoryCounts.getOrDefault(imageLoc, 0) + 1);
+  } // indexItem(String)
+
+  /**
+   * Records that an item image is in one less category, forgetting it once no
+   * category has it
+   * 
+   * @param imageLoc path of the image associated with the item
+   */
+  private void unindexItem(String imageLoc) {
+    int count = this.itemImgsToCategoryCounts.getOrDefault(imageLoc, 0);
+    if (count > 1) {
+      this.itemImgsToCategoryCounts.set(imageLoc, count - 1);
+    } else {
+      this.itemImgsToCategoryCounts.remove(imageLoc);
+    } // if/else
+  } // unindexItem(String)
+
+  /**
+   * Forgets the items of a category that is in memory, before it is replaced by an 
+   * empty one
+   * 
+   * @param categoryName the name of the category
+   */
+  private void unindexCategory(String categoryName) {
+    AACCategory categoryItems = this.categoryNamesToCategoryItems.getOrDefault(categoryName, null);
+    if (categoryItems != null) {
+      for (String imageLoc : categoryItems.getImages()) {
+        this.unindexItem(imageLoc);
+      } // for
+    } // if
+  } // unindexCategory(String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A category read from the item source that has not been changed since
+   */
+  static class ReadCategory {
+    // Where its items are in the item source
+    final int location;
+    // About how many bytes its items take up
+    final long bytes;
+    // When it was last used (compared to this.uses)
+    long lastUse;
+
+    ReadCategory(int location, long bytes, long lastUse) {
+      this.location = location;
+      this.bytes = bytes;
+      this.lastUse = lastUse;
+    } // ReadCategory(int, long, long)
+  } // class ReadCategory
+
+  /**
+   * The categories and items of one mappings file, in order
+   */
+  static class ParsedFile implements AACMappingsParser.Handler {
+    String filename;
+    ArrayList<String> categoryImgs = new ArrayList<String>();
+    ArrayList<String> categoryNames = new ArrayList<String>();
+    ArrayList<ArrayList<KVPair<String, String>>> categoryItems = 
+        new ArrayList<ArrayList<KVPair<String, String>>>();
+
+    ParsedFile(String filename) {
+      this.filename = filename;
+    } // ParsedFile(String)
+
+    /**
+     * Reads all of a mappings file (text or compiled)
+     */
+    static ParsedFile parse(String filename) throws IOException {
+      ParsedFile file = new ParsedFile(filename);
+      if (CompiledMappings.isCompiled(filename)) {
+        CompiledMappings compiled = new CompiledMappings(filename);
+        for (int i = 0; i < compiled.categories(); i++) {
+          file.category(compiled.categoryImage(i), compiled.categoryName(i));
+          compiled.readItems(i, file.categoryItems.get(i));
+        } // for
+      } else {
+        AACMappingsParser.parse(filename, file);
+      } // if/else
+      return file;
+    } // parse(String)
+
+    public void category(String imageLoc, String name) {
+      this.categoryImgs.add(imageLoc);
+      this.categoryNames.add(name);
+      this.categoryItems.add(new ArrayList<KVPair<String, String>>());
+    } // category(String, String)
+
+    public void item(String imageLoc, String text) {
+      this.categoryItems.get(this.categoryItems.size() - 1)
+          .add(new KVPair<String, String>(imageLoc, text));
+    } // item(String, String)
+  } // class ParsedFile
+
+  /**
+   * Adds the categories and items of a mappings file into AACMappings as 
+   * the file is parsed
+   */
+  private class FileLoader implements AACMappingsParser.Handler {
+    String currentReadCategory = ""; // for later when adding items to the category
+    // The current category's items, added all at once when the category ends
+    ArrayList<KVPair<String, String>> currentReadItems = new ArrayList<KVPair<String, String>>();
+
+    public void category(String imageLoc, String name) {
+      addItemsToCategory(this.currentReadItems, this.currentReadCategory);
+      this.currentReadCategory = addCategoryFromFileToMappings(imageLoc, name);
+    } // category(String, String)
+
+    public void item(String imageLoc, String text) {
+      // Holds on to the item's image and name until the whole category has been read
+      this.currentReadItems.add(new KVPair<String, String>(imageLoc, text));
+    } // item(String, String)
+
+    /**
+     * Adds the items of the last category, once the whole file has been read
+     */
+    void finish() {
+      addItemsToCategory(this.currentReadItems, this.currentReadCategory);
+    } // finish()
+  } // class FileLoader
+} // class AACMappings
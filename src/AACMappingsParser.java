@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import structures.KVPair;
+
+/**
+ * Reads a mappings file (see AACMappings.writeToFile for the format) and 
+ * hands each category and item to a Handler as it goes. The file is mapped 
+ * into memory and scanned byte by byte: no lines, regular expressions, or 
+ * arrays of words are built, only the strings handed to the Handler.
+ * 
+ * @author Wenfei Lin
+ */
+public class AACMappingsParser implements AACMappings.ItemSource {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Starts an item line.
+   */
+  static final byte ITEM = '>';
+
+  // +------------+--------------------------------------------------
+  // | Interfaces |
+  // +------------+
+
+  /**
+   * What to do with each category and item that is read.
+   */
+  public interface Handler {
+    /**
+     * Called for each category line, in order.
+     * 
+     * @param imageLoc the location of the category's image
+     * @param name the name of the category
+     */
+    void category(String imageLoc, String name);
+
+    /**
+     * Called for each category line, in order, with where the category's items
+     * start in the file (see AACMappingsParser.index and readItems). Calls 
+     * category(String, String) unless overridden.
+     * 
+     * @param imageLoc the location of the category's image
+     * @param name the name of the category
+     * @param itemsLocation where the category's items start in the file
+     */
+    default void category(String imageLoc, String name, int itemsLocation) {
+      this.category(imageLoc, name);
+    } // category(String, String, int)
+
+    /**
+     * Called for each item line, in order, after the category it is in.
+     * 
+     * @param imageLoc the location of the item's image
+     * @param text the text of the item
+     */
+    void item(String imageLoc, String text);
+  } // interface Handler
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  String filename;
+  MappedByteBuffer bytes;
+  // Holds the bytes of one string at a time while it is decoded
+  byte[] scratch;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Maps the file into memory, ready to be parsed
+   * 
+   * @param filename the name of the mappings file
+   * @throws IOException if the file cannot be read
+   */
+  AACMappingsParser(String filename) throws IOException {
+    this.filename = filename;
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Error: The file " + filename + " is too large.");
+      } // if
+      this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } // try
+    this.scratch = new byte[256];
+  } // AACMappingsParser(String)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Parses the mappings file, handing each category and item to handler.
+   * A category line is the category's image, a space, and its name (which 
+   * ends at the next space). An item line is a >, the item's image, a space, 
+   * and its text (the rest of the line, without surrounding spaces).
+   * 
+   * @param filename the name of the mappings file
+   * @param handler what to do with each category and item
+   * @throws MappingFormatException if a line is not formatted correctly
+   * @throws IOException if the file cannot be read
+   */
+  public static void parse(String filename, Handler handler) throws IOException {
+    new AACMappingsParser(filename).parse(handler);
+  } // parse(String, Handler)
+
+  /**
+   * Indexes the mappings file: hands each category to handler, with where its 
+   * items start, but only checks the items (they are not decoded, and 
+   * handler.item is never called). The items of a category can be read later 
+   * with readItems.
+   * 
+   * @param filename the name of the mappings file
+   * @param handler what to do with each category
+   * @return the parser, to read the items with
+   * @throws MappingFormatException if a line is not formatted correctly
+   * @throws IOException if the file cannot be read
+   */
+  public static AACMappingsParser index(String filename, Handler handler) throws IOException {
+    AACMappingsParser parser = new AACMappingsParser(filename);
+    parser.scan(0, handler, false, false);
+    return parser;
+  } // index(String, Handler)
+
+  /**
+   * Reads the items of a category of an indexed file, in order, into items.
+   * Safe to call from more than one thread.
+   * 
+   * @param location where the category's items start (as given by index)
+   * @param items where to put the item images and texts
+   */
+  public synchronized void readItems(int location, ArrayList<KVPair<String, String>> items) {
+    try {
+      this.scan(location, new Handler() {
+        public void category(String imageLoc, String name) {
+          // Never called: the scan stops at the next category
+        } // category(String, String)
+
+        public void item(String imageLoc, String text) {
+          items.add(new KVPair<String, String>(imageLoc, text));
+        } // item(String, String)
+      }, true, true);
+    } catch (MappingFormatException e) {
+      // The lines were checked when the file was indexed
+      throw new UncheckedIOException(e);
+    } // try/catch
+  } // readItems(int, ArrayList<KVPair<String, String>>)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Parses the whole file, handing each category and item to handler
+   * 
+   * @param handler what to do with each category and item
+   * @throws MappingFormatException if a line is not formatted correctly
+   */
+  void parse(Handler handler) throws MappingFormatException {
+    this.scan(0, handler, true, false);
+  } // parse(Handler)
+
+  /**
+   * Scans the lines of the file from start, handing each category (and, if 
+   * decodeItems, each item) to handler. Lines that are skipped are still checked.
+   * 
+   * @param start where the first line starts
+   * @param handler what to do with each category and item
+   * @param decodeItems whether to decode the items and hand them to handler
+   * @param oneCategory whether to stop at the first category line (start is 
+   *        then partway through the file, just after a category line)
+   * @throws MappingFormatException if a line is not formatted correctly
+   */
+  private void scan(int start, Handler handler, boolean decodeItems, boolean oneCategory) 
+      throws MappingFormatException {
+    int end = this.bytes.limit();
+    long line = 1;
+    boolean seenCategory = oneCategory;
+
+    while (start < end) {
+      // Find the end of the line (not counting "\n" or "\r\n")
+      int newline = this.indexOf((byte) '\n', start, end);
+      int lineEnd = newline;
+      if (lineEnd > start && this.bytes.get(lineEnd - 1) == '\r') {
+        lineEnd--;
+      } // if
+
+      boolean isItem = (lineEnd > start && this.bytes.get(start) == ITEM);
+      if (!isItem && oneCategory) {
+        return;
+      } // if
+      int imageStart = isItem ? start + 1 : start;
+      int space = this.indexOf((byte) ' ', imageStart, lineEnd);
+      
+      // Either the image, text, or both are missing in the line
+      if (space == lineEnd) {
+        throw this.error(line, start, lineEnd, 
+            "expected an image and a text separated by a space");
+      } // if
+      int textStart = space + 1;
+      int textEnd = lineEnd;
+      while (textStart < textEnd && this.bytes.get(textStart) == ' ') {
+        textStart++;
+      } // while
+      if (textStart == textEnd) {
+        throw this.error(line, start, lineEnd, "expected a text after the image");
+      } // if
+
+      // The text (or name) is the rest of the line, without surrounding spaces
+      // (as writeTo writes it, so a name of several words comes back whole)
+      while (this.bytes.get(textEnd - 1) == ' ') {
+        textEnd--;
+      } // while
+      if (isItem) {
+        if (!seenCategory) {
+          throw this.error(line, start, start, "an item must come after a category");
+        } // if
+        if (decodeItems) {
+          handler.item(this.decode(imageStart, space), this.decode(textStart, textEnd));
+        } // if
+      } else {
+        handler.category(this.decode(imageStart, space), this.decode(textStart, textEnd), 
+            Math.min(newline + 1, end));
+        seenCategory = true;
+      } // if/else
+
+      start = newline + 1;
+      line++;
+    } // while
+  } // scan(int, Handler, boolean, boolean)
+
+  /**
+   * Finds the first position of b in [start, end) of the file
+   * 
+   * @return the position of b, or end if it is not there
+   */
+  private int indexOf(byte b, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (this.bytes.get(i) == b) {
+        return i;
+      } // if
+    } // for
+    return end;
+  } // indexOf(byte, int, int)
+
+  /**
+   * Decodes [start, end) of the file as UTF-8
+   * 
+   * @return the decoded string
+   */
+  private String decode(int start, int end) {
+    int length = end - start;
+    if (length > this.scratch.length) {
+      this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+    } // if
+    this.bytes.get(start, this.scratch, 0, length);
+    return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+  } // decode(int, int)
+
+  /**
+   * Makes an exception for a problem at position of the line starting at 
+   * lineStart
+   * 
+   * @return the exception
+   */
+  private MappingFormatException error(long line, int lineStart, int position, String problem) {
+    return new MappingFormatException(this.filename, line, position - lineStart + 1, problem);
+  } // error(long, int, int, String)
+} // class AACMappingsParser
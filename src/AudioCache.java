@@ -0,0 +1,404 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.LineUnavailableException;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+import com.sun.speech.freetts.audio.AudioPlayer;
+
+/**
+ * Keeps texts spoken by one FreeTTS voice, synthesized ahead of time into
+ * memory, so speaking a known text only has to play it. Texts are
+ * synthesized one at a time on a background thread; the recently played
+ * ones are kept open as Clips, so playing them again starts at once. The
+ * audio kept is held to a budget of bytes by dropping the least recently
+ * played (or synthesized) texts, which are then synthesized when spoken.
+ *
+ * As an AACMappings.Listener, it synthesizes the text of every item added.
+ * (Audio is found by text, so an item whose text changes simply gets the
+ * new text's audio.)
+ *
+ * @author Wenfei Lin
+ */
+public class AudioCache implements AACMappings.Listener {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of Clips kept open (each holds an audio line).
+   */
+  static final int OPEN_CLIPS = 16;
+
+  /**
+   * The default budget, in bytes (about 15 minutes of 16 kHz speech).
+   */
+  static final long DEFAULT_BUDGET = 32L << 20;
+
+  /**
+   * How much longer than a Clip lasts to wait for it to stop, in milliseconds
+   * (in case its line never says it stopped).
+   */
+  static final long STOP_MARGIN = 500;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // The voice (used only on the renderer's thread)
+  Voice voice;
+  // The synthesized audio of each text, least recently used first (guarded by this)
+  LinkedHashMap<String, Audio> audio;
+  // How many bytes the audio takes up, and may (guarded by this)
+  long bytes;
+  long budget;
+  // Synthesizes texts, one at a time
+  ExecutorService renderer;
+  // Clips of recently played texts, least recently played first (guarded by this)
+  LinkedHashMap<String, Clip> clips;
+  // The Clip playing (null if none is; guarded by this)
+  Clip playing;
+  // Whether stop was called while no Clip was playing, so the next play is
+  // stopped before it starts (guarded by this)
+  boolean stopPending;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates an empty cache, with the default budget, for the FreeTTS voice
+   * named voiceName (which is allocated in the background)
+   *
+   * @param voiceName the name of the voice, e.g. "kevin16"
+   * @throws IOException if there is no such voice
+   */
+  public AudioCache(String voiceName) throws IOException {
+    this(voiceName, DEFAULT_BUDGET);
+  } // AudioCache(String)
+
+  /**
+   * Creates an empty cache for the FreeTTS voice named voiceName (which is
+   * allocated in the background)
+   *
+   * @param voiceName the name of the voice, e.g. "kevin16"
+   * @param budget about how many bytes of audio to keep
+   * @throws IOException if there is no such voice
+   */
+  public AudioCache(String voiceName, long budget) throws IOException {
+    this.voice = VoiceManager.getInstance().getVoice(voiceName);
+    if (this.voice == null) {
+      throw new IOException("There is no FreeTTS voice named " + voiceName);
+    } // if
+    this.audio = new LinkedHashMap<String, Audio>(64, 0.75f, true);
+    this.budget = budget;
+    this.clips = new LinkedHashMap<String, Clip>(OPEN_CLIPS, 0.75f, true);
+    this.renderer = Executors.newSingleThreadExecutor((task) -> {
+      Thread thread = new Thread(task, "audio-renderer");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    this.renderer.execute(() -> {
+      this.voice.setAudioPlayer(new Recorder());
+      this.voice.allocate();
+    });
+  } // AudioCache(String, long)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Synthesizes, in the background, the texts that are not in the cache
+   *
+   * @param texts the texts
+   */
+  public void warm(Collection<String> texts) {
+    for (String text : texts) {
+      this.renderer.execute(() -> {
+        if (!this.contains(text)) {
+          Recorder recorder = (Recorder) this.voice.getAudioPlayer();
+          recorder.reset();
+          if (this.voice.speak(text) && recorder.format != null) {
+            this.keep(text, new Audio(recorder.format, recorder.recorded.toByteArray()));
+          } // if
+        } // if
+      });
+    } // for
+  } // warm(Collection<String>)
+
+  /**
+   * Determines if text has been synthesized
+   *
+   * @param text the text
+   * @return true if play(text) would play it
+   */
+  public synchronized boolean contains(String text) {
+    return this.audio.containsKey(text);
+  } // contains(String)
+
+  /**
+   * Returns the number of texts synthesized
+   *
+   * @return the number of texts
+   */
+  public synchronized int size() {
+    return this.audio.size();
+  } // size()
+
+  /**
+   * Returns about how many bytes the synthesized audio takes up
+   *
+   * @return the number of bytes
+   */
+  public synchronized long bytes() {
+    return this.bytes;
+  } // bytes()
+
+  /**
+   * Plays text, if it has been synthesized, and waits until it ends (or is stopped,
+   * or has had time to end)
+   *
+   * @param text the text
+   * @return false if text has not been synthesized (or there is no audio line to play it)
+   *         (true if it was stopped before it started)
+   * @throws InterruptedException if interrupted while it plays
+   */
+  public boolean play(String text) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    LineListener listener = (event) -> {
+      if (event.getType() == LineEvent.Type.STOP) {
+        done.countDown();
+      } // if
+    };
+    Clip clip;
+    long length;
+    synchronized (this) {
+      clip = this.clip(text);
+      if (clip == null) {
+        return false;
+      } else if (this.stopPending) {
+        this.stopPending = false; // Stopped on its way to starting
+        return true;
+      } // if/else
+      clip.addLineListener(listener);
+      clip.setFramePosition(0);
+      clip.start();
+      this.playing = clip;
+      length = Math.max(0, clip.getMicrosecondLength() / 1000);
+    } // synchronized
+    try {
+      done.await(length + STOP_MARGIN, TimeUnit.MILLISECONDS);
+    } finally {
+      synchronized (this) {
+        clip.removeLineListener(listener);
+        clip.stop();
+        this.playing = null;
+      } // synchronized
+    } // try/finally
+    return true;
+  } // play(String)
+
+  /**
+   * Stops the text playing, or if none is, the next text play is about to start
+   * (unless cancelStop is called first)
+   */
+  public synchronized void stop() {
+    if (this.playing != null) {
+      this.playing.stop();
+    } else {
+      this.stopPending = true;
+    } // if/else
+  } // stop()
+
+  /**
+   * Forgets a stop that came while no text was playing, so the next play plays
+   */
+  public synchronized void cancelStop() {
+    this.stopPending = false;
+  } // cancelStop()
+
+  /**
+   * Stops synthesizing, and closes the Clips
+   */
+  public synchronized void close() {
+    this.renderer.shutdownNow();
+    for (Clip clip : this.clips.values()) {
+      clip.close();
+    } // for
+    this.clips.clear();
+  } // close()
+
+  /**
+   * Does nothing (category names are not spoken)
+   */
+  public void categoryAdded(String imageLoc, String name) {
+  } // categoryAdded(String, String)
+
+  /**
+   * Synthesizes the text of the item added, in the background
+   */
+  public void itemAdded(String categoryName, String imageLoc, String text) {
+    this.warm(List.of(text));
+  } // itemAdded(String, String, String)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Keeps the audio of text, then drops the least recently used audio until the
+   * audio kept is within budget (always keeping text's)
+   */
+  private synchronized void keep(String text, Audio audio) {
+    Audio old = this.audio.put(text, audio);
+    if (old != null) {
+      this.bytes -= old.bytes.length;
+    } // if
+    this.bytes += audio.bytes.length;
+
+    Iterator<Map.Entry<String, Audio>> leastRecent = this.audio.entrySet().iterator();
+    while (this.bytes > this.budget && this.audio.size() > 1) {
+      this.bytes -= leastRecent.next().getValue().bytes.length;
+      leastRecent.remove();
+    } // while
+  } // keep(String, Audio)
+
+  /**
+   * Gets a Clip of text, opening one (and closing the least recently played
+   * beyond OPEN_CLIPS) if it is not open
+   *
+   * @return the Clip, or null if text has not been synthesized or no Clip can be opened
+   */
+  private Clip clip(String text) {
+    Clip clip = this.clips.get(text);
+    if (clip != null) {
+      return clip;
+    } // if
+    Audio audio = this.audio.get(text);
+    if (audio == null) {
+      return null;
+    } // if
+    try {
+      clip = AudioSystem.getClip();
+      clip.open(audio.format, audio.bytes, 0, audio.bytes.length);
+    } catch (LineUnavailableException | IllegalArgumentException e) {
+      return null;
+    } // try/catch
+    this.clips.put(text, clip);
+
+    Iterator<Map.Entry<String, Clip>> leastRecent = this.clips.entrySet().iterator();
+    while (this.clips.size() > OPEN_CLIPS) {
+      leastRecent.next().getValue().close();
+      leastRecent.remove();
+    } // while
+    return clip;
+  } // clip(String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The synthesized audio of a text.
+   */
+  static class Audio {
+    final AudioFormat format;
+    final byte[] bytes;
+
+    Audio(AudioFormat format, byte[] bytes) {
+      this.format = format;
+      this.bytes = bytes;
+    } // Audio(AudioFormat, byte[])
+  } // class Audio
+
+  /**
+   * An AudioPlayer that keeps what the voice writes, instead of playing it.
+   */
+  static class Recorder implements AudioPlayer {
+    AudioFormat format;
+    ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+    float volume = 1.0f;
+
+    public void setAudioFormat(AudioFormat format) {
+      this.format = format;
+    } // setAudioFormat(AudioFormat)
+
+    public AudioFormat getAudioFormat() {
+      return this.format;
+    } // getAudioFormat()
+
+    public void pause() {
+    } // pause()
+
+    public void resume() {
+    } // resume()
+
+    public void reset() {
+      this.recorded.reset();
+    } // reset()
+
+    public boolean drain() {
+      return true;
+    } // drain()
+
+    public void begin(int size) {
+    } // begin(int)
+
+    public boolean end() {
+      return true;
+    } // end()
+
+    public void cancel() {
+    } // cancel()
+
+    public void close() {
+    } // close()
+
+    public float getVolume() {
+      return this.volume;
+    } // getVolume()
+
+    public void setVolume(float volume) {
+      this.volume = volume;
+    } // setVolume(float)
+
+    public long getTime() {
+      return 0;
+    } // getTime()
+
+    public void resetTime() {
+    } // resetTime()
+
+    public void startFirstSampleTimer() {
+    } // startFirstSampleTimer()
+
+    public boolean write(byte[] audioData) {
+      return this.write(audioData, 0, audioData.length);
+    } // write(byte[])
+
+    public boolean write(byte[] audioData, int offset, int size) {
+      this.recorded.write(audioData, offset, size);
+      return true;
+    } // write(byte[], int, int)
+
+    public void showMetrics() {
+    } // showMetrics()
+  } // class Recorder
+} // class AudioCache
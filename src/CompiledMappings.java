@@ -0,0 +1,335 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import structures.AssociativeArray;
+import structures.KVPair;
+
+/**
+ * A mappings file compiled into a binary form that can be opened without
+ * parsing it. The file is mapped into memory and strings are only decoded
+ * when they are asked for, so opening it takes about the same time however
+ * many items it has. The text format (see AACMappings.writeToFile) is still
+ * the one to edit and share; `java CompiledMappings in.txt out.aacb` compiles
+ * it.
+ *
+ * The file is made of big-endian ints:
+ *
+ *   header:     MAGIC, VERSION, categories, items, strings
+ *   categories: (image, name, first item, item count) for each category
+ *   items:      (image, text) for each item, a category's items together
+ *   strings:    (strings + 1) offsets into the string data
+ *   followed by the string data (UTF-8)
+ *
+ * where images, names, and texts are indexes into the strings.
+ *
+ * @author Wenfei Lin
+ */
+public class CompiledMappings implements AACMappings.ItemSource {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Starts every compiled mappings file ("AACB").
+   */
+  static final int MAGIC = 0x41414342;
+
+  /**
+   * The version of the format that is read and written.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * The number of bytes in the header.
+   */
+  static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+  /**
+   * The number of bytes for each category in the category directory.
+   */
+  static final int CATEGORY_BYTES = 4 * Integer.BYTES;
+
+  /**
+   * The number of bytes for each item in the item table.
+   */
+  static final int ITEM_BYTES = 2 * Integer.BYTES;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  MappedByteBuffer bytes;
+  int categoryCount;
+  int itemCount;
+  int stringCount;
+  // Where each section starts
+  int itemsStart;
+  int offsetsStart;
+  int stringsStart;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Maps a compiled mappings file into memory, checking only its header
+   *
+   * @param filename the name of the compiled mappings file
+   * @throws IOException if the file cannot be read or is not a compiled
+   *         mappings file of this version
+   */
+  public CompiledMappings(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Error: The file " + filename + " is too large.");
+      } // if
+      this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } // try
+
+    if (this.bytes.limit() < HEADER_BYTES || this.bytes.getInt(0) != MAGIC) {
+      throw new IOException(filename + ": not a compiled mappings file");
+    } // if
+    if (this.bytes.getInt(4) != VERSION) {
+      throw new IOException(filename + ": compiled mappings version " + this.bytes.getInt(4)
+          + " is not supported");
+    } // if
+    this.categoryCount = this.bytes.getInt(8);
+    this.itemCount = this.bytes.getInt(12);
+    this.stringCount = this.bytes.getInt(16);
+
+    // Work out where each section starts, in longs so a corrupt count cannot overflow
+    long itemsStart = HEADER_BYTES + (long) this.categoryCount * CATEGORY_BYTES;
+    long offsetsStart = itemsStart + (long) this.itemCount * ITEM_BYTES;
+    long stringsStart = offsetsStart + ((long) this.stringCount + 1) * Integer.BYTES;
+    if (this.categoryCount < 0 || this.itemCount < 0 || this.stringCount < 0
+        || stringsStart > this.bytes.limit()
+        || stringsStart + this.bytes.getInt((int) stringsStart - Integer.BYTES)
+            != this.bytes.limit()) {
+      throw new IOException(filename + ": compiled mappings file is truncated or corrupt");
+    } // if
+    this.itemsStart = (int) itemsStart;
+    this.offsetsStart = (int) offsetsStart;
+    this.stringsStart = (int) stringsStart;
+  } // CompiledMappings(String)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Returns the number of categories
+   *
+   * @return the number of categories
+   */
+  public int categories() {
+    return this.categoryCount;
+  } // categories()
+
+  /**
+   * Returns the image of the ith category
+   *
+   * @param i the index of the category
+   * @return the location of the category's image
+   */
+  public String categoryImage(int i) {
+    return this.string(this.bytes.getInt(HEADER_BYTES + i * CATEGORY_BYTES));
+  } // categoryImage(int)
+
+  /**
+   * Returns the name of the ith category
+   *
+   * @param i the index of the category
+   * @return the name of the category
+   */
+  public String categoryName(int i) {
+    return this.string(this.bytes.getInt(HEADER_BYTES + i * CATEGORY_BYTES + 4));
+  } // categoryName(int)
+
+  /**
+   * Decodes the items of the ith category, in order, into items
+   *
+   * @param i the index of the category
+   * @param items where to put the item images and texts
+   */
+  public void readItems(int i, ArrayList<KVPair<String, String>> items) {
+    int first = this.bytes.getInt(HEADER_BYTES + i * CATEGORY_BYTES + 8);
+    int count = this.bytes.getInt(HEADER_BYTES + i * CATEGORY_BYTES + 12);
+    items.ensureCapacity(items.size() + count);
+    for (int position = this.itemsStart + first * ITEM_BYTES, end = position + count * ITEM_BYTES;
+        position < end; position += ITEM_BYTES) {
+      items.add(new KVPair<String, String>(this.string(this.bytes.getInt(position)),
+          this.string(this.bytes.getInt(position + 4))));
+    } // for
+  } // readItems(int, ArrayList<KVPair<String, String>>)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Determines if a file is a compiled mappings file (rather than a text one)
+   *
+   * @param filename the name of the file
+   * @return true if the file starts with MAGIC
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isCompiled(String filename) throws IOException {
+    try (InputStream in = Files.newInputStream(Path.of(filename))) {
+      byte[] magic = in.readNBytes(Integer.BYTES);
+      return magic.length == Integer.BYTES && ByteBuffer.wrap(magic).getInt() == MAGIC;
+    } // try
+  } // isCompiled(String)
+
+  /**
+   * Compiles a text mappings file into a compiled one. Each distinct string
+   * is stored once.
+   *
+   * @param textFile the name of the text mappings file to read
+   * @param compiledFile the name of the compiled mappings file to write
+   * @throws MappingFormatException if a line of textFile is not formatted correctly
+   * @throws IOException if textFile cannot be read or compiledFile cannot be written
+   */
+  public static void compile(String textFile, String compiledFile) throws IOException {
+    Compiler compiler = new Compiler();
+    AACMappingsParser.parse(textFile, compiler);
+    compiler.write(compiledFile);
+  } // compile(String, String)
+
+  /**
+   * Compiles the text mappings file named by the first argument into the
+   * compiled one named by the second
+   *
+   * @param args the text file and the compiled file
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: java CompiledMappings <mappings.txt> <mappings.aacb>");
+      System.exit(2);
+    } // if
+    try {
+      compile(args[0], args[1]);
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    } // try/catch
+  } // main(String[])
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Decodes the ith string
+   *
+   * @return the string
+   */
+  private String string(int i) {
+    int start = this.bytes.getInt(this.offsetsStart + i * Integer.BYTES);
+    int end = this.bytes.getInt(this.offsetsStart + (i + 1) * Integer.BYTES);
+    byte[] utf8 = new byte[end - start];
+    this.bytes.get(this.stringsStart + start, utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  } // string(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Collects the categories, items, and strings of a text mappings file as
+   * it is parsed, then writes them out compiled
+   */
+  private static class Compiler implements AACMappingsParser.Handler {
+    // Each distinct string, and where it is in the string table
+    AssociativeArray<String, Integer> stringIndexes = new AssociativeArray<String, Integer>();
+    ArrayList<byte[]> strings = new ArrayList<byte[]>();
+    // (image, name, first item, item count) for each category
+    ArrayList<int[]> categories = new ArrayList<int[]>();
+    // (image, text) for each item
+    ArrayList<int[]> items = new ArrayList<int[]>();
+
+    public void category(String imageLoc, String name) {
+      this.categories.add(new int[] { this.intern(imageLoc), this.intern(name),
+          this.items.size(), 0 });
+    } // category(String, String)
+
+    public void item(String imageLoc, String text) {
+      this.items.add(new int[] { this.intern(imageLoc), this.intern(text) });
+      this.categories.get(this.categories.size() - 1)[3]++;
+    } // item(String, String)
+
+    /**
+     * Writes everything collected to filename, by way of a temporary file that
+     * atomically replaces it (so a program that has the old file mapped keeps 
+     * seeing the old file)
+     */
+    void write(String filename) throws IOException {
+      Path target = Path.of(filename).toAbsolutePath();
+      Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), 
+          ".tmp");
+      try {
+        this.writeTo(temp);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, 
+            StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temp);
+      } // try/finally
+    } // write(String)
+
+    /**
+     * Writes everything collected to file
+     */
+    private void writeTo(Path file) throws IOException {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          Files.newOutputStream(file), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.categories.size());
+        out.writeInt(this.items.size());
+        out.writeInt(this.strings.size());
+        for (int[] category : this.categories) {
+          for (int field : category) {
+            out.writeInt(field);
+          } // for
+        } // for
+        for (int[] item : this.items) {
+          out.writeInt(item[0]);
+          out.writeInt(item[1]);
+        } // for
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] string : this.strings) {
+          offset += string.length;
+          out.writeInt(offset);
+        } // for
+        for (byte[] string : this.strings) {
+          out.write(string);
+        } // for
+      } // try
+    } // writeTo(Path)
+
+    /**
+     * Returns where s is in the string table, adding it if it is not there yet
+     */
+    private int intern(String s) {
+      Integer index = this.stringIndexes.getOrDefault(s, null);
+      if (index == null) {
+        index = this.strings.size();
+        this.stringIndexes.set(s, index);
+        this.strings.add(s.getBytes(StandardCharsets.UTF_8));
+      } // if
+      return index;
+    } // intern(String)
+  } // class Compiler
+} // class CompiledMappings
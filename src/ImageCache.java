@@ -0,0 +1,312 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Keeps decoded images, so showing an image again does not read and decode
+ * its file again. Images are found by path, and are only used while the
+ * file's modification time is the one they were decoded at. The cache holds
+ * up to a budget of bytes (of decoded pixels), dropping the least recently
+ * used images to stay within it. Dropped images can be kept in a second tier
+ * of soft references, which the garbage collector clears when memory is low.
+ * A file that cannot be decoded is kept too, as an empty image taking up no
+ * bytes, so it is not decoded again until its modification time changes.
+ *
+ * Safe to use from more than one thread (images are decoded outside the
+ * lock, so two threads may decode the same image at once, but only one is
+ * kept).
+ *
+ * @author Wenfei Lin
+ */
+public class ImageCache {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default budget, in bytes (about 200 96x96 icons).
+   */
+  static final long DEFAULT_BUDGET = 8L << 20;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // The images, least recently used first (guarded by this)
+  LinkedHashMap<String, Entry> images;
+  // Images dropped from this.images, if there is a second tier (guarded by this)
+  HashMap<String, SoftEntry> softImages;
+  ReferenceQueue<Entry> cleared;
+  // How many bytes the images in this.images take up, and may
+  long bytes;
+  long budget;
+  // Where to get images scaled to fit a grid cell (null to use images as they are)
+  ThumbnailCache thumbnails;
+  // Counts of lookups (guarded by this)
+  long hits;
+  long softHits;
+  long misses;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates an empty cache with the default budget and a second tier
+   */
+  public ImageCache() {
+    this(DEFAULT_BUDGET, true);
+  } // ImageCache()
+
+  /**
+   * Creates an empty cache
+   *
+   * @param budget about how many bytes of decoded images to keep
+   * @param softTier whether to keep images dropped for the budget as soft references
+   */
+  public ImageCache(long budget, boolean softTier) {
+    this(budget, softTier, null);
+  } // ImageCache(long, boolean)
+
+  /**
+   * Creates an empty cache of thumbnails (rather than of the images themselves)
+   *
+   * @param budget about how many bytes of decoded images to keep
+   * @param softTier whether to keep images dropped for the budget as soft references
+   * @param thumbnails where to get the thumbnails (null to keep the images themselves)
+   */
+  public ImageCache(long budget, boolean softTier, ThumbnailCache thumbnails) {
+    this.thumbnails = thumbnails;
+    this.images = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    this.softImages = softTier ? new HashMap<String, SoftEntry>() : null;
+    this.cleared = new ReferenceQueue<Entry>();
+    this.budget = budget;
+  } // ImageCache(long, boolean, ThumbnailCache)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Describes the cache's size and counts
+   */
+  public synchronized String toString() {
+    return "ImageCache { images: " + this.images.size() + ", bytes: " + this.bytes
+        + ", hits: " + this.hits + ", soft hits: " + this.softHits
+        + ", misses: " + this.misses + " }";
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Gets the image at path, decoding it only if it is not in the cache (or
+   * its file has changed since it was decoded)
+   *
+   * @param path the image's file
+   * @return the image (empty if the file cannot be read)
+   */
+  public ImageIcon get(String path) {
+    long modified = new File(path).lastModified();
+    ImageIcon icon = this.lookUp(path, modified);
+    if (icon == null) {
+      icon = this.decode(path, modified);
+    } // if
+    return icon;
+  } // get(String)
+
+  /**
+   * Determines if the image at path is in the cache, and up to date, without
+   * counting a hit or miss
+   *
+   * @param path the image's file
+   * @return true if get(path) would not decode the file
+   */
+  public synchronized boolean contains(String path) {
+    Entry entry = this.images.get(path);
+    return entry != null && entry.modified == new File(path).lastModified();
+  } // contains(String)
+
+  /**
+   * Decodes the image at path into the cache, unless it is there already,
+   * without counting a hit or miss
+   *
+   * @param path the image's file
+   */
+  public void preload(String path) {
+    if (!this.contains(path)) {
+      this.decode(path, new File(path).lastModified());
+    } // if
+  } // preload(String)
+
+  /**
+   * Returns the number of lookups that found an image in the cache
+   *
+   * @return the number of hits (including soft hits)
+   */
+  public synchronized long hits() {
+    return this.hits + this.softHits;
+  } // hits()
+
+  /**
+   * Returns the number of lookups that found an image only in the soft tier
+   *
+   * @return the number of soft hits
+   */
+  public synchronized long softHits() {
+    return this.softHits;
+  } // softHits()
+
+  /**
+   * Returns the number of lookups that had to decode an image
+   *
+   * @return the number of misses
+   */
+  public synchronized long misses() {
+    return this.misses;
+  } // misses()
+
+  /**
+   * Returns about how many bytes the images in the cache take up (not
+   * counting the soft tier)
+   *
+   * @return the number of bytes
+   */
+  public synchronized long bytes() {
+    return this.bytes;
+  } // bytes()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Finds an up-to-date image in the cache, counting a hit if there is one
+   *
+   * @return the image, or null if it has to be decoded
+   */
+  private synchronized ImageIcon lookUp(String path, long modified) {
+    Entry entry = this.images.get(path);
+    if (entry != null && entry.modified == modified) {
+      this.hits++;
+      return entry.icon;
+    } // if
+
+    if (this.softImages != null) {
+      this.purgeCleared();
+      SoftEntry soft = this.softImages.remove(path);
+      Entry softEntry = (soft == null) ? null : soft.get();
+      if (softEntry != null && softEntry.modified == modified) {
+        this.softHits++;
+        this.keep(path, softEntry);
+        return softEntry.icon;
+      } // if
+    } // if
+    this.misses++;
+    return null;
+  } // lookUp(String, long)
+
+  /**
+   * Decodes the image at path (outside the lock), then keeps it in the cache
+   *
+   * @return the image (empty, and kept as such, if the file cannot be read)
+   */
+  private ImageIcon decode(String path, long modified) {
+    ImageIcon icon;
+    try {
+      BufferedImage image = (this.thumbnails == null) 
+          ? ImageIO.read(new File(path)) : this.thumbnails.get(path);
+      // (Formats ImageIO cannot read are left to the toolkit)
+      icon = (image == null) ? new ImageIcon(path) : new ImageIcon(image);
+    } catch (IOException e) {
+      icon = new ImageIcon();
+    } // try/catch
+
+    Entry entry = new Entry(icon, modified);
+    synchronized (this) {
+      this.keep(path, entry);
+    } // synchronized
+    return icon;
+  } // decode(String, long)
+
+  /**
+   * Puts entry in the cache, then drops the least recently used images until
+   * the cache is within budget (always keeping entry itself)
+   */
+  private void keep(String path, Entry entry) {
+    Entry old = this.images.put(path, entry);
+    if (old != null) {
+      this.bytes -= old.bytes;
+    } // if
+    if (this.softImages != null) {
+      this.softImages.remove(path);
+    } // if
+    this.bytes += entry.bytes;
+
+    Iterator<Map.Entry<String, Entry>> leastRecent = this.images.entrySet().iterator();
+    while (this.bytes > this.budget && this.images.size() > 1) {
+      Map.Entry<String, Entry> dropped = leastRecent.next();
+      leastRecent.remove();
+      this.bytes -= dropped.getValue().bytes;
+      if (this.softImages != null) {
+        this.softImages.put(dropped.getKey(),
+            new SoftEntry(dropped.getKey(), dropped.getValue(), this.cleared));
+      } // if
+    } // while
+  } // keep(String, Entry)
+
+  /**
+   * Forgets the soft entries whose images the garbage collector has cleared
+   */
+  private void purgeCleared() {
+    SoftEntry soft;
+    while ((soft = (SoftEntry) this.cleared.poll()) != null) {
+      if (this.softImages.get(soft.path) == soft) {
+        this.softImages.remove(soft.path);
+      } // if
+    } // while
+  } // purgeCleared()
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A decoded image (empty if the file could not be decoded), with the
+   * modification time of its file when it was decoded.
+   */
+  static class Entry {
+    final ImageIcon icon;
+    final long modified;
+    // About how many bytes its pixels take up (none if it is empty)
+    final long bytes;
+
+    Entry(ImageIcon icon, long modified) {
+      this.icon = icon;
+      this.modified = modified;
+      this.bytes = (icon.getIconWidth() <= 0) ? 0 : 4L * icon.getIconWidth() * icon.getIconHeight();
+    } // Entry(ImageIcon, long)
+  } // class Entry
+
+  /**
+   * A soft reference to an Entry, which remembers the path it was for.
+   */
+  static class SoftEntry extends SoftReference<Entry> {
+    final String path;
+
+    SoftEntry(String path, Entry entry, ReferenceQueue<Entry> queue) {
+      super(entry, queue);
+      this.path = path;
+    } // SoftEntry(String, Entry, ReferenceQueue<Entry>)
+  } // class SoftEntry
+} // class ImageCache
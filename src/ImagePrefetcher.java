@@ -0,0 +1,74 @@
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes images into an ImageCache in the background, before they are
+ * shown, so that showing them only has to take them from the cache. Each
+ * call to prefetch replaces the one before: images asked for earlier that
+ * have not been started yet are skipped, since the user has moved on.
+ *
+ * @author Wenfei Lin
+ */
+public class ImagePrefetcher {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  ImageCache cache;
+  // Decodes the images
+  ExecutorService executor;
+  // Counts calls to prefetch; a task only runs if no call has come since its own
+  AtomicLong generation;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a prefetcher that decodes into cache on threads background threads
+   *
+   * @param cache where to put the decoded images
+   * @param threads how many images to decode at once
+   */
+  public ImagePrefetcher(ImageCache cache, int threads) {
+    this.cache = cache;
+    this.generation = new AtomicLong();
+    this.executor = Executors.newFixedThreadPool(threads, (task) -> {
+      Thread thread = new Thread(task, "image-prefetcher");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  } // ImagePrefetcher(ImageCache, int)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Decodes the images at paths into the cache, in order, in the background
+   * (instead of any images asked for earlier that have not been started)
+   *
+   * @param paths the images' files
+   */
+  public void prefetch(List<String> paths) {
+    long generation = this.generation.incrementAndGet();
+    for (String path : paths) {
+      this.executor.execute(() -> {
+        if (this.generation.get() == generation) {
+          this.cache.preload(path);
+        } // if
+      });
+    } // for
+  } // prefetch(List<String>)
+
+  /**
+   * Stops prefetching
+   */
+  public void close() {
+    this.generation.incrementAndGet();
+    this.executor.shutdown();
+  } // close()
+} // class ImagePrefetcher
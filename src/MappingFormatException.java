@@ -0,0 +1,69 @@
+import java.io.IOException;
+
+/**
+ * Exceptions that indicate that a mappings file is not formatted the way
+ * AACMappings expects, and where.
+ * 
+ * @author Wenfei Lin
+ */
+public class MappingFormatException extends IOException {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  private static final long serialVersionUID = 1L;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The line (counting from 1) with the problem.
+   */
+  final long line;
+
+  /**
+   * The column (counting from 1, in bytes) of the problem.
+   */
+  final int column;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new exception for a problem at line and column of filename.
+   * 
+   * @param filename the name of the mappings file
+   * @param line the line (counting from 1) with the problem
+   * @param column the column (counting from 1, in bytes) of the problem
+   * @param problem what is wrong
+   */
+  public MappingFormatException(String filename, long line, int column, String problem) {
+    super(filename + ":" + line + ":" + column + ": " + problem);
+    this.line = line;
+    this.column = column;
+  } // MappingFormatException(String, long, int, String)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Returns the line with the problem
+   * 
+   * @return the line (counting from 1) with the problem
+   */
+  public long getLine() {
+    return this.line;
+  } // getLine()
+
+  /**
+   * Returns the column of the problem
+   * 
+   * @return the column (counting from 1, in bytes) of the problem
+   */
+  public int getColumn() {
+    return this.column;
+  } // getColumn()
+} // class MappingFormatException
@@ -0,0 +1,428 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the edits made to an AACMappings by appending each one to a journal
+ * next to its mappings file (the snapshot), instead of rewriting the whole
+ * snapshot. Records are written as they happen and forced to disk in
+ * batches. Compaction, in the background, folds the journal into a fresh
+ * snapshot that replaces the old one with an atomic rename, so a crash at
+ * any point leaves either the old snapshot or the new one, never a mix.
+ *
+ * The journal is text, one record per line, with its fields separated by tabs:
+ *
+ *   C image name           (a category was added)
+ *   I category image text  (an item was added into category)
+ *
+ * A backslash, tab or newline in a field is written as \\, \t or \n, so names
+ * and texts may hold any of them. (Journals written before fields were
+ * separated by tabs, with single spaces, are still read.)
+ *
+ * A last line without a newline was cut off by a crash and is ignored.
+ * Replaying a record twice does nothing the second time (the add is turned
+ * down as a duplicate), so a crash during compaction is also safe.
+ *
+ * Appending only writes the record; forcing it to disk happens on the
+ * journal's own thread, so an edit made on the event thread never waits
+ * for the disk. How each compaction went is told to a MappingsSaver.Listener.
+ *
+ * @author Wenfei Lin
+ */
+public class MappingsJournal implements AACMappings.Listener, Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How long a record may wait before it is forced to disk, in milliseconds.
+   */
+  static final long SYNC_DELAY = 200;
+
+  /**
+   * How many records may wait before they are forced to disk at once.
+   */
+  static final int SYNC_BATCH = 64;
+
+  /**
+   * How many records the journal may hold before it is compacted.
+   */
+  static final int COMPACT_AFTER = 1000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // The mappings file, the journal of edits to it, and the journal being compacted
+  Path snapshot;
+  Path journal;
+  Path compacting;
+  // Appends to the journal (guarded by this)
+  FileChannel channel;
+  // How many records have not been forced to disk, and how many the journal holds
+  int unsynced;
+  int records;
+  // Whether a compaction has been asked for and has not started yet
+  boolean compactionPending;
+  // Forces the journal to disk and compacts it, in the background
+  ScheduledExecutorService executor;
+  // What to tell when a compaction is done, and where to run it
+  MappingsSaver.Listener listener;
+  Executor listenerExecutor;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Opens (or creates) the journal of snapshotFile for appending
+   */
+  private MappingsJournal(Path snapshot, MappingsSaver.Listener listener,
+      Executor listenerExecutor) throws IOException {
+    this.snapshot = snapshot;
+    this.listener = listener;
+    this.listenerExecutor = listenerExecutor;
+    this.journal = Path.of(snapshot + ".journal");
+    this.compacting = Path.of(snapshot + ".journal.compacting");
+    dropCutOffRecord(this.journal);
+    this.channel = FileChannel.open(this.journal, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    this.executor = Executors.newSingleThreadScheduledExecutor((task) -> {
+      Thread thread = new Thread(task, "mappings-journal");
+      thread.setDaemon(true);
+      return thread;
+    });
+  } // MappingsJournal(Path, MappingsSaver.Listener, Executor)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Replays the edits journaled for snapshotFile into mappings (which should have
+   * just been loaded from snapshotFile), then journals every edit made to mappings
+   * from now on
+   *
+   * @param snapshotFile the mappings file that mappings was loaded from
+   * @param mappings the mappings
+   * @return the journal
+   * @throws IOException if the journal cannot be read or opened
+   */
+  public static MappingsJournal open(String snapshotFile, AACMappings mappings)
+      throws IOException {
+    return open(snapshotFile, mappings, new MappingsSaver.Listener() {
+      public void saved(String filename) {
+      } // saved(String)
+
+      public void saveFailed(String filename, IOException e) {
+        System.out.println("Error: Could not save to " + filename + ": " + e.getMessage());
+      } // saveFailed(String, IOException)
+    }, Runnable::run);
+  } // open(String, AACMappings)
+
+  /**
+   * Replays the edits journaled for snapshotFile into mappings (which should have
+   * just been loaded from snapshotFile), then journals every edit made to mappings
+   * from now on, telling listener (by way of listenerExecutor) how each compaction went
+   *
+   * @param snapshotFile the mappings file that mappings was loaded from
+   * @param mappings the mappings
+   * @param listener what to tell when a compaction is done
+   * @param listenerExecutor where to run the listener (e.g. SwingUtilities::invokeLater)
+   * @return the journal
+   * @throws IOException if the journal cannot be read or opened
+   */
+  public static MappingsJournal open(String snapshotFile, AACMappings mappings,
+      MappingsSaver.Listener listener, Executor listenerExecutor) throws IOException {
+    MappingsJournal journal =
+        new MappingsJournal(Path.of(snapshotFile), listener, listenerExecutor);
+    // Edits still being compacted when the program stopped come first
+    replay(journal.compacting, mappings);
+    journal.records = replay(journal.journal, mappings);
+    mappings.addListener(journal);
+    return journal;
+  } // open(String, AACMappings, MappingsSaver.Listener, Executor)
+
+  public void categoryAdded(String imageLoc, String name) {
+    this.append("C\t" + escape(imageLoc) + "\t" + escape(name) + "\n");
+  } // categoryAdded(String, String)
+
+  public void itemAdded(String categoryName, String imageLoc, String text) {
+    this.append("I\t" + escape(categoryName) + "\t" + escape(imageLoc) + "\t" + escape(text)
+        + "\n");
+  } // itemAdded(String, String, String)
+
+  /**
+   * Forces every record appended so far to disk
+   *
+   * @throws IOException if the journal cannot be written to
+   */
+  public synchronized void sync() throws IOException {
+    if (this.unsynced > 0) {
+      this.channel.force(false);
+      this.unsynced = 0;
+    } // if
+  } // sync()
+
+  /**
+   * Compacts the journal in the background: the snapshot and the journal are
+   * folded into a new snapshot, which atomically replaces the old one. Asking
+   * again before the compaction starts does not compact twice. The listener
+   * is told whether it worked.
+   *
+   * @return the compaction (done once the listener has been told)
+   */
+  public synchronized Future<?> compact() {
+    if (this.compactionPending) {
+      return this.executor.submit(() -> { });
+    } // if
+    this.compactionPending = true;
+    return this.executor.submit(() -> {
+      String filename = this.snapshot.toString();
+      try {
+        this.compactNow();
+        this.listenerExecutor.execute(() -> this.listener.saved(filename));
+      } catch (IOException e) {
+        this.listenerExecutor.execute(() -> this.listener.saveFailed(filename, e));
+      } catch (RuntimeException e) {
+        IOException failure = new IOException(e.toString(), e);
+        this.listenerExecutor.execute(() -> this.listener.saveFailed(filename, failure));
+      } // try/catch
+    });
+  } // compact()
+
+  /**
+   * Forces the journal to disk and closes it. Compactions that have already
+   * started are finished first.
+   *
+   * @throws IOException if the journal cannot be written to
+   */
+  public void close() throws IOException {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+    synchronized (this) {
+      this.sync();
+      this.channel.close();
+    } // synchronized
+  } // close()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Appends a record to the journal, forcing it to disk with the rest of its batch
+   */
+  private synchronized void append(String record) {
+    try {
+      ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+      while (bytes.hasRemaining()) {
+        this.channel.write(bytes);
+      } // while
+    } catch (IOException e) {
+      // The edit has been made in memory, so report the journal problem and go on
+      System.out.println("Error: Could not save the edit to " + this.journal + ": "
+          + e.getMessage());
+      return;
+    } // try/catch
+
+    // (Forced on this.executor, so whoever made the edit does not wait for the disk)
+    if (this.unsynced++ == 0) {
+      this.executor.schedule(this::syncQuietly, SYNC_DELAY, TimeUnit.MILLISECONDS);
+    } else if (this.unsynced == SYNC_BATCH) {
+      this.executor.execute(this::syncQuietly);
+    } // if
+    if (++this.records >= COMPACT_AFTER && !this.compactionPending) {
+      this.compact();
+    } // if
+  } // append(String)
+
+  /**
+   * Forces the journal to disk, reporting any problem rather than throwing it
+   */
+  private void syncQuietly() {
+    try {
+      this.sync();
+    } catch (IOException e) {
+      System.out.println("Error: Could not save edits to " + this.journal + ": "
+          + e.getMessage());
+    } // try/catch
+  } // syncQuietly()
+
+  /**
+   * Folds the snapshot and the journal into a new snapshot (run on this.executor)
+   */
+  private void compactNow() throws IOException {
+    // Set the journal aside, so edits made while compacting go into a new one
+    synchronized (this) {
+      this.compactionPending = false;
+      this.sync();
+      if (Files.exists(this.compacting)) {
+        // Left by a compaction that did not finish, so keep both sets of edits, oldest
+        // first (if this is cut short, the edits are replayed twice, which is harmless)
+        Files.write(this.compacting, Files.readAllBytes(this.journal), StandardOpenOption.APPEND);
+        Files.delete(this.journal);
+      } else {
+        Files.move(this.journal, this.compacting, StandardCopyOption.ATOMIC_MOVE);
+      } // if/else
+      this.channel.close();
+      this.channel = FileChannel.open(this.journal, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      this.records = 0;
+    } // synchronized
+    this.foldAndReplace();
+  } // compactNow()
+
+  /**
+   * Loads the snapshot, replays the journal being compacted, and atomically
+   * replaces the snapshot with the result
+   */
+  private void foldAndReplace() throws IOException {
+    AACMappings mappings = new AACMappings(this.snapshot.toString());
+    replay(this.compacting, mappings);
+
+    Path text = Path.of(this.snapshot + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+      mappings.writeTo(writer);
+    } // try
+    Path newSnapshot = text;
+    if (CompiledMappings.isCompiled(this.snapshot.toString())) {
+      // Keep the snapshot compiled, as it was
+      newSnapshot = Path.of(this.snapshot + ".tmp.aacb");
+      CompiledMappings.compile(text.toString(), newSnapshot.toString());
+      Files.delete(text);
+    } // if
+    try (FileChannel written = FileChannel.open(newSnapshot, StandardOpenOption.WRITE)) {
+      written.force(true);
+    } // try
+
+    Files.move(newSnapshot, this.snapshot, StandardCopyOption.ATOMIC_MOVE);
+    Files.delete(this.compacting);
+  } // foldAndReplace()
+
+  /**
+   * Cuts a last record without a newline off the end of a journal, so the next
+   * record does not run on from it
+   */
+  private static void dropCutOffRecord(Path journal) throws IOException {
+    if (!Files.exists(journal)) {
+      return;
+    } // if
+    try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      long end = channel.size();
+      ByteBuffer last = ByteBuffer.allocate(1);
+      while (end > 0) {
+        last.clear();
+        channel.read(last, end - 1);
+        if (last.get(0) == '\n') {
+          break;
+        } // if
+        end--;
+      } // while
+      if (end < channel.size()) {
+        channel.truncate(end);
+      } // if
+    } // try
+  } // dropCutOffRecord(Path)
+
+  /**
+   * Replays the complete records of a journal into mappings
+   *
+   * @return the number of records replayed
+   */
+  private static int replay(Path journal, AACMappings mappings) throws IOException {
+    String contents;
+    try {
+      contents = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return 0;
+    } // try/catch
+
+    int records = 0;
+    int start = 0;
+    int newline;
+    // (A last record without a newline was cut off, so it is left out)
+    while ((newline = contents.indexOf('\n', start)) >= 0) {
+      String record = contents.substring(start, newline);
+      String[] fields;
+      if (record.indexOf('\t') >= 0) {
+        fields = record.split("\t", -1);
+        for (int i = 1; i < fields.length; i++) {
+          fields[i] = unescape(fields[i]);
+        } // for
+      } else {
+        // Written before fields were separated by tabs (the last field may hold spaces)
+        fields = record.split(" ", record.startsWith("I ") ? 4 : 3);
+      } // if/else
+      if (fields.length == 3 && fields[0].equals("C")) {
+        mappings.add("", fields[1], fields[2]);
+      } else if (fields.length == 4 && fields[0].equals("I")) {
+        mappings.add(fields[1], fields[2], fields[3]);
+      } else {
+        System.out.println("Error: Skipping damaged record in " + journal + ": " + record);
+      } // if/else
+      records++;
+      start = newline + 1;
+    } // while
+    return records;
+  } // replay(Path, AACMappings)
+
+  /**
+   * Writes the backslashes, tabs and newlines in a field as \\, \t and \n, so the
+   * field can sit in a record
+   */
+  static String escape(String field) {
+    StringBuilder escaped = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\') {
+        escaped.append("\\\\");
+      } else if (c == '\t') {
+        escaped.append("\\t");
+      } else if (c == '\n') {
+        escaped.append("\\n");
+      } else {
+        escaped.append(c);
+      } // if/else
+    } // for
+    return escaped.toString();
+  } // escape(String)
+
+  /**
+   * Undoes escape
+   */
+  static String unescape(String field) {
+    if (field.indexOf('\\') < 0) {
+      return field;
+    } // if
+    StringBuilder unescaped = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\' && i + 1 < field.length()) {
+        char next = field.charAt(++i);
+        unescaped.append(next == 't' ? '\t' : (next == 'n' ? '\n' : next));
+      } else {
+        unescaped.append(c);
+      } // if/else
+    } // for
+    return unescaped.toString();
+  } // unescape(String)
+} // class MappingsJournal
@@ -0,0 +1,332 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import structures.AssociativeArray;
+import structures.KVPair;
+
+/**
+ * Watches the mappings files an AACMappings was loaded from, and when one
+ * changes, applies just the change to the AACMappings. Only the file that
+ * changed is read again. The files are combined as AACMappings(List)
+ * combines them, both as they were and as they are now, and the two are
+ * compared (not the AACMappings itself, so categories and items added from
+ * the interface are kept). A file of lower precedence thus cannot override
+ * one of higher precedence, and a category removed from one file keeps the
+ * items other files give it. Only the categories in the file that changed,
+ * and those whose image on the home page changed, are compared item by item.
+ *
+ * Files are read and compared on a background thread. The changes are
+ * applied by way of an executor (e.g. SwingUtilities::invokeLater), so the
+ * AACMappings is only ever touched where it is used.
+ *
+ * An AACMappings that reads its categories lazily from a text file cannot
+ * be reloaded: it reads a category from where it was when the file was
+ * indexed, and an edit moves it. (CompiledMappings.compile replaces a
+ * compiled file rather than changing it, so the old one stays readable.)
+ *
+ * @author Wenfei Lin
+ */
+public class MappingsReloader implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How long to wait for a file to stop changing before reading it, in
+   * milliseconds (editors often write a file in several steps).
+   */
+  static final long SETTLE_TIME = 100;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  AACMappings mappings;
+  // The watched files, and what each held when last read
+  ArrayList<Path> files;
+  ArrayList<AACMappings.ParsedFile> contents;
+  WatchService watcher;
+  // Applies changes to the mappings, then tells onReload
+  Executor applyExecutor;
+  Runnable onReload;
+  Thread thread;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Starts watching filenames (which mappings was just loaded from), reading what
+   * they hold now to compare later changes with
+   *
+   * @param mappings the mappings to apply changes to
+   * @param filenames the mappings files to watch
+   * @param applyExecutor where to apply changes to mappings
+   * @param onReload what to run (by way of applyExecutor) after changes are applied
+   * @throws IOException if the files cannot be watched
+   * @throws IllegalArgumentException if mappings reads its categories lazily from a text file
+   */
+  public MappingsReloader(AACMappings mappings, List<String> filenames,
+      Executor applyExecutor, Runnable onReload) throws IOException {
+    if (mappings.itemSource instanceof AACMappingsParser) {
+      throw new IllegalArgumentException(
+          "Mappings read lazily from a text file cannot be reloaded");
+    } // if
+    this.mappings = mappings;
+    this.applyExecutor = applyExecutor;
+    this.onReload = onReload;
+    this.files = new ArrayList<Path>();
+    this.contents = new ArrayList<AACMappings.ParsedFile>();
+    this.watcher = FileSystems.getDefault().newWatchService();
+    for (String filename : filenames) {
+      Path file = Path.of(filename).toAbsolutePath();
+      this.files.add(file);
+      // (Watching a directory twice gives the same key, so this is harmless)
+      file.getParent().register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    } // for
+    // Read here rather than on this.thread, so a change made before the thread gets 
+    // going is compared with what the file held when mappings was loaded
+    for (Path file : this.files) {
+      this.contents.add(this.read(file));
+    } // for
+    this.thread = new Thread(this::run, "mappings-reloader");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  } // MappingsReloader(AACMappings, List<String>, Executor, Runnable)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Stops watching
+   *
+   * @throws IOException if the watch service cannot be closed
+   */
+  public void close() throws IOException {
+    this.watcher.close();
+  } // close()
+
+  /**
+   * Works out the changes that turn mappings combined from some files (as
+   * AACMappings(List) combines them) into mappings combined from the same files
+   * after some of them changed
+   *
+   * @param before what each file held before (null if it could not be read)
+   * @param after what each file holds now, in the same order (the very same
+   *        ParsedFile as in before if the file did not change)
+   * @return the changes, to apply in order
+   */
+  static ArrayList<Consumer<AACMappings>> diff(List<AACMappings.ParsedFile> before,
+      List<AACMappings.ParsedFile> after) {
+    AssociativeArray<String, String> beforeHome = combine(before, null, null);
+    AssociativeArray<String, String> afterHome = combine(after, null, null);
+
+    // The categories to compare item by item: those in a file that changed, and 
+    // those whose image changed (e.g. one left out before because its image was taken)
+    AssociativeArray<String, Boolean> affected = new AssociativeArray<String, Boolean>();
+    for (int f = 0; f < after.size(); f++) {
+      if (before.get(f) != after.get(f)) {
+        addNames(before.get(f), affected);
+        addNames(after.get(f), affected);
+      } // if
+    } // for
+    for (String name : beforeHome.keys()) {
+      if (!beforeHome.getOrDefault(name, "").equals(afterHome.getOrDefault(name, null))) {
+        affected.set(name, true);
+      } // if
+    } // for
+    for (String name : afterHome.keys()) {
+      if (!beforeHome.containsKey(name)) {
+        affected.set(name, true);
+      } // if
+    } // for
+    AssociativeArray<String, AssociativeArray<String, String>> beforeItems =
+        new AssociativeArray<String, AssociativeArray<String, String>>();
+    AssociativeArray<String, AssociativeArray<String, String>> afterItems =
+        new AssociativeArray<String, AssociativeArray<String, String>>();
+    combine(before, affected, beforeItems);
+    combine(after, affected, afterItems);
+    ArrayList<Consumer<AACMappings>> changes = new ArrayList<Consumer<AACMappings>>();
+
+    // Removals first, so an image that moves is free when it is added again
+    for (String name : beforeHome.keys()) {
+      if (!afterHome.containsKey(name)) {
+        changes.add((mappings) -> mappings.removeCategory(name));
+      } else if (affected.containsKey(name)) {
+        AssociativeArray<String, String> nowItems = afterItems.getOrDefault(name, null);
+        for (String imageLoc : beforeItems.getOrDefault(name, null).keys()) {
+          if (!nowItems.containsKey(imageLoc)) {
+            changes.add((mappings) -> mappings.removeItem(name, imageLoc));
+          } // if
+        } // for
+      } // if/else
+    } // for
+
+    // Then additions and changes
+    for (String name : afterHome.keys()) {
+      if (!affected.containsKey(name)) {
+        continue;
+      } // if
+      String imageLoc = afterHome.getOrDefault(name, null);
+      if (!imageLoc.equals(beforeHome.getOrDefault(name, null))) {
+        changes.add((mappings) -> mappings.putCategory(imageLoc, name));
+      } // if
+      AssociativeArray<String, String> wasItems =
+          beforeItems.getOrDefault(name, new AssociativeArray<String, String>());
+      for (KVPair<String, String> item : afterItems.getOrDefault(name, null).entries()) {
+        String itemImageLoc = item.getKey();
+        String text = item.getValue();
+        if (!text.equals(wasItems.getOrDefault(itemImageLoc, null))) {
+          changes.add((mappings) -> mappings.putItem(name, itemImageLoc, text));
+        } // if
+      } // for
+    } // for
+    return changes;
+  } // diff(List<AACMappings.ParsedFile>, List<AACMappings.ParsedFile>)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Reads each file again when it changes (run on this.thread)
+   */
+  private void run() {
+    try {
+      while (true) {
+        // Wait for a change, then for the files to settle
+        WatchKey key = this.watcher.take();
+        boolean[] changed = new boolean[this.files.size()];
+        while (key != null) {
+          Path directory = (Path) key.watchable();
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path) {
+              Path file = directory.resolve((Path) event.context());
+              int i = this.files.indexOf(file);
+              if (i >= 0) {
+                changed[i] = true;
+              } // if
+            } // if
+          } // for
+          key.reset();
+          key = this.watcher.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+        } // while
+
+        for (int i = 0; i < changed.length; i++) {
+          if (changed[i]) {
+            this.reload(i);
+          } // if
+        } // for
+      } // while
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Stopped watching
+    } // try/catch
+  } // run()
+
+  /**
+   * Reads the ith file again and applies what changed in it
+   */
+  private void reload(int i) {
+    AACMappings.ParsedFile after = this.read(this.files.get(i));
+    if (after == null) {
+      return; // Nothing to compare (the error has been reported)
+    } // if
+    ArrayList<AACMappings.ParsedFile> before = new ArrayList<AACMappings.ParsedFile>(this.contents);
+    if (before.get(i) == null) {
+      // It could not be read before, so everything in it is new
+      before.set(i, new AACMappings.ParsedFile(this.files.get(i).toString()));
+    } // if
+    this.contents.set(i, after);
+
+    ArrayList<Consumer<AACMappings>> changes = diff(before, this.contents);
+    if (!changes.isEmpty()) {
+      this.applyExecutor.execute(() -> {
+        for (Consumer<AACMappings> change : changes) {
+          change.accept(this.mappings);
+        } // for
+        this.onReload.run();
+      });
+    } // if
+  } // reload(int)
+
+  /**
+   * Reads a mappings file, reporting (rather than throwing) any problem
+   *
+   * @return what the file holds, or null if it could not be read
+   */
+  private AACMappings.ParsedFile read(Path file) {
+    try {
+      return AACMappings.ParsedFile.parse(file.toString());
+    } catch (IOException e) {
+      System.out.println("Error: Could not reload " + file + ": " + e.getMessage());
+      return null;
+    } // try/catch
+  } // read(Path)
+
+  /**
+   * Combines files as AACMappings(List) combines them: a category keeps the image
+   * (and place) it first had, a category whose image is already taken by another is
+   * left out, and later items are added after earlier ones, with later texts winning
+   *
+   * @param files the files, in order of precedence (null if one could not be read)
+   * @param itemsOf the names of the categories whose items to combine (or null for none)
+   * @param items where to put the items of those categories, by name
+   * @return the home page: each category's name, to its image, in order
+   */
+  private static AssociativeArray<String, String> combine(List<AACMappings.ParsedFile> files,
+      AssociativeArray<String, Boolean> itemsOf,
+      AssociativeArray<String, AssociativeArray<String, String>> items) {
+    AssociativeArray<String, String> home = new AssociativeArray<String, String>();
+    AssociativeArray<String, Boolean> imagesTaken = new AssociativeArray<String, Boolean>();
+    for (AACMappings.ParsedFile file : files) {
+      if (file == null) {
+        continue;
+      } // if
+      for (int i = 0; i < file.categoryNames.size(); i++) {
+        String name = file.categoryNames.get(i);
+        String imageLoc = file.categoryImgs.get(i);
+        boolean wanted = (itemsOf != null && itemsOf.containsKey(name));
+        if (!home.containsKey(name)) {
+          if (imagesTaken.containsKey(imageLoc)) {
+            continue; // Left out
+          } // if
+          home.set(name, imageLoc);
+          imagesTaken.set(imageLoc, true);
+          if (wanted) {
+            items.set(name, new AssociativeArray<String, String>());
+          } // if
+        } // if
+        if (wanted) {
+          items.getOrDefault(name, null).putAll(file.categoryItems.get(i).iterator());
+        } // if
+      } // for
+    } // for
+    return home;
+  } // combine(List<AACMappings.ParsedFile>, AssociativeArray<String, Boolean>, AssociativeArray<String, AssociativeArray<String, String>>)
+
+  /**
+   * Adds the names of the categories of a parsed file (if it could be read) to names
+   */
+  private static void addNames(AACMappings.ParsedFile file,
+      AssociativeArray<String, Boolean> names) {
+    if (file != null) {
+      for (String name : file.categoryNames) {
+        names.set(name, true);
+      } // for
+    } // if
+  } // addNames(AACMappings.ParsedFile, AssociativeArray<String, Boolean>)
+} // class MappingsReloader
@@ -0,0 +1,169 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves AACMappings in the background, so whoever asks (e.g. the Swing event
+ * thread) does not wait for the disk. Each save writes a snapshot of the
+ * mappings, taken when the save is asked for, to a temporary file that then
+ * atomically replaces the file being saved to. Saves asked for while another
+ * is being written are coalesced: only the latest of them is written.
+ *
+ * @author Wenfei Lin
+ */
+public class MappingsSaver {
+  // +------------+--------------------------------------------------
+  // | Interfaces |
+  // +------------+
+
+  /**
+   * What to tell when a save is done.
+   */
+  public interface Listener {
+    /**
+     * Called when the mappings have been saved to filename
+     *
+     * @param filename the file saved to
+     */
+    void saved(String filename);
+
+    /**
+     * Called when the mappings could not be saved to filename (which is unchanged)
+     *
+     * @param filename the file that was being saved to
+     * @param e the problem
+     */
+    void saveFailed(String filename, IOException e);
+  } // interface Listener
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // Writes the saves, one at a time
+  ExecutorService executor;
+  // Runs the listener (e.g. SwingUtilities::invokeLater)
+  Executor listenerExecutor;
+  Listener listener;
+  // The latest save not yet started, if any (guarded by this)
+  AACMappings pendingMappings;
+  String pendingFilename;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a saver that tells listener about each save, by way of listenerExecutor
+   *
+   * @param listener what to tell when a save is done
+   * @param listenerExecutor where to run the listener
+   */
+  public MappingsSaver(Listener listener, Executor listenerExecutor) {
+    this.listener = listener;
+    this.listenerExecutor = listenerExecutor;
+    this.executor = Executors.newSingleThreadExecutor((task) -> {
+      Thread thread = new Thread(task, "mappings-saver");
+      thread.setDaemon(true);
+      return thread;
+    });
+  } // MappingsSaver(Listener, Executor)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Saves mappings, as they are now, to filename in the background
+   *
+   * @param mappings the mappings to save
+   * @param filename the file to save them to
+   */
+  public void save(AACMappings mappings, String filename) {
+    AACMappings snapshot = mappings.snapshot();
+    synchronized (this) {
+      boolean queued = (this.pendingMappings != null);
+      this.pendingMappings = snapshot;
+      this.pendingFilename = filename;
+      if (queued) {
+        return; // The save already waiting will write this snapshot instead
+      } // if
+    } // synchronized
+    this.executor.execute(this::writePending);
+  } // save(AACMappings, String)
+
+  /**
+   * Finishes the saves asked for so far, then stops
+   */
+  public void close() {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+  } // close()
+
+  /**
+   * Writes mappings in the same format as AACMappings.writeToFile, to a temporary
+   * file that then atomically replaces filename
+   *
+   * @param mappings the mappings to write
+   * @param filename the file to write them to
+   * @throws IOException if the file cannot be written (it is then unchanged)
+   */
+  public static void writeAtomically(AACMappings mappings, String filename) throws IOException {
+    Path target = Path.of(filename).toAbsolutePath();
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        mappings.writeTo(writer);
+      } // try
+      try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        written.force(true);
+      } // try
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    } // try/finally
+  } // writeAtomically(AACMappings, String)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Writes the latest save asked for (run on this.executor)
+   */
+  private void writePending() {
+    AACMappings mappings;
+    String filename;
+    synchronized (this) {
+      mappings = this.pendingMappings;
+      filename = this.pendingFilename;
+      this.pendingMappings = null;
+      this.pendingFilename = null;
+    } // synchronized
+
+    try {
+      writeAtomically(mappings, filename);
+      this.listenerExecutor.execute(() -> this.listener.saved(filename));
+    } catch (IOException e) {
+      this.listenerExecutor.execute(() -> this.listener.saveFailed(filename, e));
+    } catch (RuntimeException e) {
+      // (e.g. an unread category that could not be read from its file)
+      IOException failure = new IOException(e.toString(), e);
+      this.listenerExecutor.execute(() -> this.listener.saveFailed(filename, failure));
+    } // try/catch
+  } // writePending()
+} // class MappingsSaver
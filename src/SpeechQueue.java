@@ -0,0 +1,291 @@
+import java.util.concurrent.ArrayBlockingQueue;
+
+import javax.speech.synthesis.Synthesizer;
+
+/**
+ * Speaks texts one after another on a thread of its own, so whoever asks
+ * for a text to be spoken (e.g. the event thread) does not wait for it. At
+ * most a fixed number of texts wait to be spoken; when the queue is full the
+ * one that has waited longest is dropped. A text can instead cut off what is
+ * being spoken (and everything waiting), and a text that is already being
+ * spoken or waiting can be dropped, so quick repeated taps say it only once.
+ * Texts that an AudioCache has already synthesized are played from it
+ * rather than synthesized again.
+ *
+ * @author Wenfei Lin
+ */
+public class SpeechQueue {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of texts that may wait to be spoken.
+   */
+  static final int DEFAULT_CAPACITY = 8;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  Synthesizer synthesizer;
+  // Where to play texts synthesized ahead of time from (null if nowhere)
+  AudioCache audioCache;
+  // Whether a new text cuts off what is being spoken and what is waiting
+  boolean interruptCurrent;
+  // Whether a text already being spoken or waiting is dropped
+  boolean dropDuplicates;
+  // The texts waiting to be spoken
+  ArrayBlockingQueue<Utterance> queue;
+  // What is being spoken (null if nothing is; guarded by this)
+  String current;
+  // Counts the times what is spoken was cut off (guarded by this)
+  long generation;
+  Thread thread;
+  // Counts, and the time texts waited before being spoken (guarded by this)
+  long spoken;
+  long dropped;
+  long totalWaitNanos;
+  long maxWaitNanos;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a queue that speaks with synthesizer (which must be allocated
+   * and resumed), and starts its thread
+   *
+   * @param synthesizer what to speak with
+   * @param capacity how many texts may wait to be spoken
+   * @param interruptCurrent whether a new text cuts off what is being spoken
+   * @param dropDuplicates whether a text already being spoken or waiting is dropped
+   */
+  public SpeechQueue(Synthesizer synthesizer, int capacity, boolean interruptCurrent,
+      boolean dropDuplicates) {
+    this(synthesizer, null, capacity, interruptCurrent, dropDuplicates);
+  } // SpeechQueue(Synthesizer, int, boolean, boolean)
+
+  /**
+   * Creates a queue that plays texts from audioCache when they are there, and
+   * speaks the rest with synthesizer (which must be allocated and resumed),
+   * and starts its thread
+   *
+   * @param synthesizer what to speak with
+   * @param audioCache where to play texts synthesized ahead of time from (or null)
+   * @param capacity how many texts may wait to be spoken
+   * @param interruptCurrent whether a new text cuts off what is being spoken
+   * @param dropDuplicates whether a text already being spoken or waiting is dropped
+   */
+  public SpeechQueue(Synthesizer synthesizer, AudioCache audioCache, int capacity,
+      boolean interruptCurrent, boolean dropDuplicates) {
+    this.synthesizer = synthesizer;
+    this.audioCache = audioCache;
+    this.interruptCurrent = interruptCurrent;
+    this.dropDuplicates = dropDuplicates;
+    this.queue = new ArrayBlockingQueue<Utterance>(capacity);
+    this.thread = new Thread(this::run, "speech");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  } // SpeechQueue(Synthesizer, AudioCache, int, boolean, boolean)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Describes the queue's depth and counts
+   */
+  public synchronized String toString() {
+    return "SpeechQueue { depth: " + this.queue.size() + ", spoken: " + this.spoken
+        + ", dropped: " + this.dropped + ", average wait: " + this.averageWait()
+        + " ms, max wait: " + this.maxWait() + " ms }";
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Queues text to be spoken, and returns at once
+   *
+   * @param text what to speak
+   * @return false if text was dropped as a duplicate
+   */
+  public synchronized boolean speak(String text) {
+    if (this.dropDuplicates && (text.equals(this.current) || this.isWaiting(text))) {
+      this.dropped++;
+      return false;
+    } // if
+    if (this.interruptCurrent) {
+      // (A text taken off the queue but not yet started is cut off by the new generation)
+      this.generation++;
+      this.dropped += this.queue.size();
+      this.queue.clear();
+      if (this.current != null) {
+        this.cancelCurrent();
+      } // if
+    } // if
+    Utterance utterance = new Utterance(text, this.generation);
+    while (!this.queue.offer(utterance)) {
+      // Full: the text that has waited longest is the least likely to still be wanted
+      this.queue.poll();
+      this.dropped++;
+    } // while
+    return true;
+  } // speak(String)
+
+  /**
+   * Returns the number of texts waiting to be spoken
+   *
+   * @return the queue depth
+   */
+  public int depth() {
+    return this.queue.size();
+  } // depth()
+
+  /**
+   * Returns the number of texts that have started being spoken
+   *
+   * @return the number spoken
+   */
+  public synchronized long spoken() {
+    return this.spoken;
+  } // spoken()
+
+  /**
+   * Returns the number of texts dropped (as duplicates, cut off, or because
+   * the queue was full) before being spoken
+   *
+   * @return the number dropped
+   */
+  public synchronized long dropped() {
+    return this.dropped;
+  } // dropped()
+
+  /**
+   * Returns how long texts have waited, on average, between being queued
+   * and starting to be spoken
+   *
+   * @return the average wait, in milliseconds
+   */
+  public synchronized double averageWait() {
+    return (this.spoken == 0) ? 0 : this.totalWaitNanos / 1e6 / this.spoken;
+  } // averageWait()
+
+  /**
+   * Returns the longest a text has waited between being queued and starting
+   * to be spoken
+   *
+   * @return the longest wait, in milliseconds
+   */
+  public synchronized double maxWait() {
+    return this.maxWaitNanos / 1e6;
+  } // maxWait()
+
+  /**
+   * Stops speaking, dropping anything waiting
+   */
+  public void close() {
+    synchronized (this) {
+      this.generation++;
+    } // synchronized
+    this.queue.clear();
+    this.thread.interrupt();
+    this.cancelCurrent();
+  } // close()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Speaks each text as it is queued (run on this.thread)
+   */
+  private void run() {
+    try {
+      while (true) {
+        Utterance utterance = this.queue.take();
+        synchronized (this) {
+          if (utterance.generation != this.generation) {
+            this.dropped++; // Cut off after it was taken off the queue
+            continue;
+          } // if
+          long wait = System.nanoTime() - utterance.queued;
+          this.spoken++;
+          this.totalWaitNanos += wait;
+          this.maxWaitNanos = Math.max(this.maxWaitNanos, wait);
+          this.current = utterance.text;
+          if (this.audioCache != null) {
+            // (A stop meant for the text before, e.g. one that was synthesized)
+            this.audioCache.cancelStop();
+          } // if
+        } // synchronized
+        try {
+          // (Both return early if the text is cut off)
+          if (this.audioCache == null || !this.audioCache.play(utterance.text)) {
+            this.synthesizer.speakPlainText(utterance.text, null);
+            synchronized (this) {
+              if (utterance.generation != this.generation) {
+                // Cut off before it was queued to the synthesizer, so cancel it now
+                this.synthesizer.cancelAll();
+              } // if
+            } // synchronized
+            this.synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
+          } // if
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          e.printStackTrace();
+        } finally {
+          synchronized (this) {
+            this.current = null;
+          } // synchronized
+        } // try/catch/finally
+      } // while
+    } catch (InterruptedException e) {
+      // Closed
+    } // try/catch
+  } // run()
+
+  /**
+   * Cuts off what is being spoken, whether it is played or synthesized
+   */
+  private void cancelCurrent() {
+    if (this.audioCache != null) {
+      this.audioCache.stop();
+    } // if
+    this.synthesizer.cancelAll();
+  } // cancelCurrent()
+
+  /**
+   * Determines if text is waiting to be spoken
+   */
+  private boolean isWaiting(String text) {
+    for (Utterance utterance : this.queue) {
+      if (utterance.text.equals(text)) {
+        return true;
+      } // if
+    } // for
+    return false;
+  } // isWaiting(String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A text waiting to be spoken, with when it was queued (and in which generation).
+   */
+  static class Utterance {
+    final String text;
+    final long queued;
+    final long generation;
+
+    Utterance(String text, long generation) {
+      this.text = text;
+      this.queued = System.nanoTime();
+      this.generation = generation;
+    } // Utterance(String, long)
+  } // class Utterance
+} // class SpeechQueue
@@ -0,0 +1,320 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Makes images no bigger than a grid cell, once, and keeps them in a
+ * directory so they are made only once across runs too. A thumbnail is
+ * found by a hash of its image's path, modification time, and file size,
+ * and of the cell size, so changing any of them makes a new thumbnail.
+ * Images that already fit are kept at their own size (never enlarged).
+ *
+ * The directory is kept to a budget of bytes: when the cache is opened, the
+ * thumbnails used least recently are deleted (in the background) until the
+ * rest fit. A thumbnail counts as used when it is made or read.
+ *
+ * @author Wenfei Lin
+ */
+public class ThumbnailCache {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default budget for the directory, in bytes (a few thousand thumbnails).
+   */
+  static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+  /**
+   * How old a temporary file must be before it is taken to be left over from a
+   * thumbnail that was never finished (e.g. by a crash), in milliseconds.
+   */
+  static final long ABANDONED_AGE = 60 * 60 * 1000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // Where the thumbnails are kept
+  Path directory;
+  // The most a thumbnail may be
+  int maxWidth;
+  int maxHeight;
+  // The most bytes the thumbnails may take up
+  long maxBytes;
+  // Makes thumbnails ahead of time
+  ExecutorService executor;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a thumbnail cache in directory (which is made if it is not there),
+   * with the default budget
+   *
+   * @param directory where to keep the thumbnails
+   * @param maxWidth the most a thumbnail may be across
+   * @param maxHeight the most a thumbnail may be down
+   * @throws IOException if the directory cannot be made
+   */
+  public ThumbnailCache(Path directory, int maxWidth, int maxHeight) throws IOException {
+    this(directory, maxWidth, maxHeight, DEFAULT_MAX_BYTES);
+  } // ThumbnailCache(Path, int, int)
+
+  /**
+   * Creates a thumbnail cache in directory (which is made if it is not there),
+   * and starts deleting the least recently used thumbnails beyond maxBytes
+   *
+   * @param directory where to keep the thumbnails
+   * @param maxWidth the most a thumbnail may be across
+   * @param maxHeight the most a thumbnail may be down
+   * @param maxBytes about how many bytes the thumbnails may take up
+   * @throws IOException if the directory cannot be made
+   */
+  public ThumbnailCache(Path directory, int maxWidth, int maxHeight, long maxBytes)
+      throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxWidth = maxWidth;
+    this.maxHeight = maxHeight;
+    this.maxBytes = maxBytes;
+    this.executor = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1), (task) -> {
+          Thread thread = new Thread(task, "thumbnailer");
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        });
+    this.executor.execute(this::trim);
+  } // ThumbnailCache(Path, int, int, long)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Gets the thumbnail of the image at path, making it if it has not been made
+   *
+   * @param path the image's file
+   * @return the thumbnail, or null if the image cannot be read
+   * @throws IOException if the image cannot be read
+   */
+  public BufferedImage get(String path) throws IOException {
+    File file = new File(path);
+    Path thumbnail = this.directory.resolve(this.key(file) + ".png");
+    if (Files.exists(thumbnail)) {
+      BufferedImage image = ImageIO.read(thumbnail.toFile());
+      if (image != null) {
+        this.touch(thumbnail);
+        return image;
+      } // if
+      // (A damaged thumbnail is made again)
+    } // if
+    return this.make(file, thumbnail);
+  } // get(String)
+
+  /**
+   * Makes the thumbnails of the images at paths that have not been made, in the
+   * background
+   *
+   * @param paths the images' files
+   */
+  public void makeAll(List<String> paths) {
+    for (String path : paths) {
+      this.executor.execute(() -> {
+        try {
+          File file = new File(path);
+          Path thumbnail = this.directory.resolve(this.key(file) + ".png");
+          if (!Files.exists(thumbnail)) {
+            this.make(file, thumbnail);
+          } // if
+        } catch (IOException e) {
+          // It is made (or the problem reported) when it is shown
+        } // try/catch
+      });
+    } // for
+  } // makeAll(List<String>)
+
+  /**
+   * Makes the thumbnails of the images that paths lists that have not been made,
+   * in the background (listing them in the background too, since there may be many)
+   *
+   * @param paths lists the images' files
+   */
+  public void makeAll(Supplier<List<String>> paths) {
+    this.executor.execute(() -> this.makeAll(paths.get()));
+  } // makeAll(Supplier<List<String>>)
+
+  /**
+   * Stops making thumbnails in the background
+   */
+  public void close() {
+    this.executor.shutdownNow();
+  } // close()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Deletes the least recently used thumbnails until the rest take up no more
+   * than maxBytes, and any temporary files left over from thumbnails never
+   * finished (run on this.executor)
+   */
+  private void trim() {
+    ArrayList<Stored> thumbnails = new ArrayList<Stored>();
+    long bytes = 0;
+    long now = System.currentTimeMillis();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+      for (Path file : files) {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long used = attributes.lastModifiedTime().toMillis();
+        String name = file.getFileName().toString();
+        if (name.endsWith(".png")) {
+          thumbnails.add(new Stored(file, attributes.size(), used));
+          bytes += attributes.size();
+        } else if (name.endsWith(".tmp") && now - used > ABANDONED_AGE) {
+          Files.deleteIfExists(file);
+        } // if/else
+      } // for
+
+      thumbnails.sort(Comparator.comparingLong((Stored thumbnail) -> thumbnail.used));
+      for (int i = 0; i < thumbnails.size() && bytes > this.maxBytes; i++) {
+        Files.deleteIfExists(thumbnails.get(i).path);
+        bytes -= thumbnails.get(i).size;
+      } // for
+    } catch (IOException e) {
+      // Tried again the next time the cache is opened
+    } // try/catch
+  } // trim()
+
+  /**
+   * Marks thumbnail as just used, so it is among the last to be deleted
+   */
+  private void touch(Path thumbnail) {
+    try {
+      Files.setLastModifiedTime(thumbnail, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // It is only deleted sooner
+    } // try/catch
+  } // touch(Path)
+
+  /**
+   * Scales the image in file to fit a cell, and saves it as thumbnail (unless it
+   * already fits, in which case reading the image is as quick as reading a thumbnail)
+   *
+   * @return the scaled image, or null if file is not an image ImageIO can read
+   */
+  private BufferedImage make(File file, Path thumbnail) throws IOException {
+    BufferedImage image = ImageIO.read(file);
+    if (image == null) {
+      return null;
+    } // if
+    BufferedImage scaled = this.scale(image);
+    if (scaled == image) {
+      return image;
+    } // if
+
+    // Written under another name first, so a thumbnail is never seen half-written
+    Path temp = Files.createTempFile(this.directory, "thumbnail", ".tmp");
+    try {
+      ImageIO.write(scaled, "png", temp.toFile());
+      Files.move(temp, thumbnail, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    } // try/finally
+    return scaled;
+  } // make(File, Path)
+
+  /**
+   * Scales image down (keeping its shape) to fit in maxWidth by maxHeight,
+   * halving it a step at a time so no detail is skipped
+   *
+   * @return the scaled image (or image, if it already fits)
+   */
+  private BufferedImage scale(BufferedImage image) {
+    double fit = Math.min((double) this.maxWidth / image.getWidth(),
+        (double) this.maxHeight / image.getHeight());
+    if (fit >= 1) {
+      return image;
+    } // if
+    int width = Math.max(1, (int) Math.round(image.getWidth() * fit));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * fit));
+
+    BufferedImage scaled = image;
+    do {
+      int stepWidth = Math.max(width, scaled.getWidth() / 2);
+      int stepHeight = Math.max(height, scaled.getHeight() / 2);
+      BufferedImage step = new BufferedImage(stepWidth, stepHeight, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D graphics = step.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(scaled, 0, 0, stepWidth, stepHeight, null);
+      graphics.dispose();
+      scaled = step;
+    } while (scaled.getWidth() != width || scaled.getHeight() != height);
+    return scaled;
+  } // scale(BufferedImage)
+
+  /**
+   * Works out the name of the thumbnail of the image in file
+   *
+   * @return a hash of the image's path, modification time, and size, and the cell size
+   */
+  private String key(File file) {
+    String identity = file.getAbsolutePath() + "\0" + file.lastModified() + "\0"
+        + file.length() + "\0" + this.maxWidth + "x" + this.maxHeight;
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256")
+          .digest(identity.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 16; i++) {
+        hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+        hex.append(Character.forDigit(hash[i] & 0xF, 16));
+      } // for
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform has SHA-256
+      throw new IllegalStateException(e);
+    } // try/catch
+  } // key(File)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A thumbnail in the directory, with its size and when it was last used.
+   */
+  static class Stored {
+    final Path path;
+    final long size;
+    final long used;
+
+    Stored(Path path, long size, long used) {
+      this.path = path;
+      this.size = size;
+      this.used = used;
+    } // Stored(Path, long, long)
+  } // class Stored
+} // class ThumbnailCache
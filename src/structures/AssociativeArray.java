@@ -1,12 +1,33 @@
 package structures;
 
-import static java.lang.reflect.Array.newInstance;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * A basic implementation of Associative Arrays with keys of type K
  * and values of type V. Associative Arrays store key/value pairs
  * and permit you to look up values by key.
  *
+ * Pairs are stored flattened in the parallel arrays `keys`, `values`,
+ * and `hashes`, in the order they were added (removals leave null
+ * holes, which later additions fill). An open-addressing hash index
+ * over those arrays lets `get`, `set`, `hasKey`, and `remove` run in
+ * (expected) constant time. Holes are kept on a free list, so adding
+ * never has to search for one. Removing never moves the other pairs;
+ * `trimToSize` gives back the space of holes when asked to, and
+ * `trimIfSparse` when most of the space is unused.
+ *
+ * `keys()`, `values()`, and `entries()` give read-only views that walk
+ * the arrays directly (in order) rather than copying them.
+ *
  * @author Wenfei Lin
  * @author Samuel A. Rebelsky
  */
@@ -20,6 +41,21 @@ public class AssociativeArray<K, V> {
    */
   static final int DEFAULT_CAPACITY = 16;
 
+  /**
+   * Marks a slot in the index that has never held a pair.
+   */
+  static final int EMPTY = -1;
+
+  /**
+   * Marks a slot in the index whose pair was removed.
+   */
+  static final int DELETED = -2;
+
+  /**
+   * Stands in for a null key, since a null in `keys` marks a hole.
+   */
+  static final Object NULL_KEY = new Object();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -30,9 +66,44 @@ public class AssociativeArray<K, V> {
   int size;
 
   /**
-   * The array of key/value pairs.
+   * The keys of the key/value pairs (null for a hole). Null keys
+   * are stored as NULL_KEY.
+   */
+  Object[] keys;
+
+  /**
+   * The values of the key/value pairs; values[i] goes with keys[i].
+   */
+  Object[] values;
+
+  /**
+   * The cached hashes of the keys; hashes[i] goes with keys[i]. For a
+   * hole, hashes[i] instead holds the position of the next hole on the
+   * free list (or -1).
+   */
+  int[] hashes;
+
+  /**
+   * The hash index. Each slot holds EMPTY, DELETED, or the position of
+   * a pair in `keys`. Always a power of two, and twice as long as `keys`.
+   */
+  int[] index;
+
+  /**
+   * The number of DELETED slots in the index.
+   */
+  int deleted;
+
+  /**
+   * One past the last position in `keys` that has held a pair.
    */
-  KVPair<K, V> pairs[];
+  int high;
+
+  /**
+   * The position of the first hole on the free list, or -1 if there
+   * are no holes.
+   */
+  int free;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -41,14 +112,37 @@ public class AssociativeArray<K, V> {
   /**
    * Create a new, empty associative array.
    */
-  @SuppressWarnings({ "unchecked" })
   public AssociativeArray() {
-    // Creating new arrays is sometimes a PITN.
-    this.pairs = (KVPair<K, V>[]) newInstance((new KVPair<K, V>()).getClass(),
-        DEFAULT_CAPACITY);
-    this.size = 0;
+    this(DEFAULT_CAPACITY);
   } // AssociativeArray()
 
+  /**
+   * Create a new, empty associative array with room for expectedSize
+   * pairs before it has to grow.
+   */
+  public AssociativeArray(int expectedSize) {
+    int capacity = capacityFor(expectedSize);
+    this.keys = new Object[capacity];
+    this.values = new Object[capacity];
+    this.hashes = new int[capacity];
+    this.index = newIndex(capacity * 2);
+    this.size = 0;
+    this.deleted = 0;
+    this.high = 0;
+    this.free = -1;
+  } // AssociativeArray(int)
+
+  /**
+   * Create an associative array over the given arrays, with the other
+   * fields left for the caller to fill in (for `clone`).
+   */
+  private AssociativeArray(Object[] keys, Object[] values, int[] hashes, int[] index) {
+    this.keys = keys;
+    this.values = values;
+    this.hashes = hashes;
+    this.index = index;
+  } // AssociativeArray(Object[], Object[], int[], int[])
+
   // +------------------+--------------------------------------------
   // | Standard Methods |
   // +------------------+
@@ -57,33 +151,14 @@ public class AssociativeArray<K, V> {
    * Create a copy of this AssociativeArray.
    */
   public AssociativeArray<K, V> clone() {
-    AssociativeArray<K,V> clonedAssociativeArray = 
-        new AssociativeArray<K,V>();
-    int numOfExpansions = this.pairs.length / DEFAULT_CAPACITY;
-
-    // Expands the cloned array to match at least the 
-    // size of the original array
-    for (int i = 0; i < numOfExpansions; i++) {
-      clonedAssociativeArray.expand();
-    } // for
-
-    for (int i = 0; i < this.pairs.length; i++) { 
-      if (this.pairs[i] != null) {
-        // As long as the entry is not null, create a new pair to insert in 
-        // the cloned array at the same index currently in the original array,
-        // and copy the key and value over to the new pair
-        KVPair<K,V> newPair = (KVPair<K,V>) new KVPair<K,V>(null, null);
-        newPair.key = this.pairs[i].key;
-        newPair.value = this.pairs[i].value;
-        clonedAssociativeArray.pairs[i] = newPair;
-      } else {
-        // Otherwise, you're looking at a null entry, so just set the spot in 
-        // the cloned array to null 
-        clonedAssociativeArray.pairs[i] = null;
-      } // if/else
-    } // for
-    // Copy over the size
+    // The keys and values themselves are shared with the original,
+    // so copying the arrays copies everything
+    AssociativeArray<K,V> clonedAssociativeArray = new AssociativeArray<K,V>(
+        this.keys.clone(), this.values.clone(), this.hashes.clone(), this.index.clone());
     clonedAssociativeArray.size = this.size;
+    clonedAssociativeArray.deleted = this.deleted;
+    clonedAssociativeArray.high = this.high;
+    clonedAssociativeArray.free = this.free;
 
     return clonedAssociativeArray;
   } // clone()
@@ -92,87 +167,130 @@ public class AssociativeArray<K, V> {
    * Convert the array to a string.
    */
   public String toString() {
-    // Format: "{ key0: value0, key1: value1, ... keyn: valuen }"
-    String keyValuePairs = "{"; // Will always print opening curly brace
-    int numOfPairs = this.size;
-    int pairsAdded = 0;
-    int i = 0;
-
-    if (numOfPairs != 0) { // Only add information about key value pairs if the arr is not empty
-      while (pairsAdded != numOfPairs) { // Keep looping if not all pairs in arr have been seen
-        if (this.pairs[i] != null) { // If there is an non-null pair in the array,
-          // Start writing standard string format ( key: value)
-          keyValuePairs += " " + this.pairs[i].key + ": " + this.pairs[i].value;
-          pairsAdded++;
-        
-          if (pairsAdded != numOfPairs) { // If there are more pairs in the array, add a comma
-            keyValuePairs += ",";
-          } else { // Spacing for after the commas 
-            keyValuePairs += " ";
-          } // if/else
-        } // if
-          i++;
-      } // while
-    } // if
-    keyValuePairs += "}"; // Will always print closing curly brace
-      
-    return keyValuePairs;
+    StringBuilder keyValuePairs = new StringBuilder();
+    try {
+      this.writeTo(keyValuePairs);
+    } catch (IOException e) {
+      // StringBuilder never throws IOException
+      throw new UncheckedIOException(e);
+    } // try/catch
+    return keyValuePairs.toString();
   } // toString()
 
   // +----------------+----------------------------------------------
   // | Public Methods |
   // +----------------+
 
+  /**
+   * Write the array to out in the same format as `toString()`, one
+   * piece at a time, without building the whole string first.
+   *
+   * @throws IOException
+   *                     when out cannot be written to.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    // Format: "{ key0: value0, key1: value1, ... keyn: valuen }"
+    out.append('{'); // Will always print opening curly brace
+    int numOfPairs = this.size;
+    int pairsAdded = 0;
+    int i = 0;
+
+    while (pairsAdded != numOfPairs) { // Keep looping if not all pairs in arr have been seen
+      if (this.keys[i] != null) { // If there is an non-null pair in the array,
+        // Start writing standard string format ( key: value)
+        out.append(' ').append(String.valueOf(this.keyAt(i)));
+        out.append(": ").append(String.valueOf(this.values[i]));
+        pairsAdded++;
+
+        if (pairsAdded != numOfPairs) { // If there are more pairs in the array, add a comma
+          out.append(',');
+        } else { // Spacing for after the commas
+          out.append(' ');
+        } // if/else
+      } // if
+      i++;
+    } // while
+    out.append('}'); // Will always print closing curly brace
+  } // writeTo(Appendable)
+
   /**
    * Set the value associated with key to value. Future calls to
    * get(key) will return value.
    */
   public void set(K key, V value) {
-    int numOfPairs = this.size;
+    this.put(key, value, hash(key));
+  } // set(K,V)
+
+  /**
+   * Set every key/value pair of other in this associative array, as
+   * with `set`. Grows the array at most once, up front.
+   */
+  public void putAll(AssociativeArray<? extends K, ? extends V> other) {
+    this.ensureCapacity(this.size + other.size);
+    for (int i = 0; i < other.high; i++) {
+      if (other.keys[i] != null) {
+        // The other array already knows the hash
+        this.put(other.keyAt(i), other.valueAt(i), other.hashes[i]);
+      } // if
+    } // for
+  } // putAll(AssociativeArray)
+
+  /**
+   * Set every key/value pair from pairs in this associative array, as
+   * with `set` (so later pairs win over earlier ones with the same key).
+   * Call `ensureCapacity` first if the number of pairs is known.
+   */
+  public void putAll(Iterator<? extends KVPair<? extends K, ? extends V>> pairs) {
+    while (pairs.hasNext()) {
+      KVPair<? extends K, ? extends V> pair = pairs.next();
+      this.set(pair.key, pair.value);
+    } // while
+  } // putAll(Iterator)
+
+  /**
+   * Make sure that the associative array can hold at least capacity
+   * pairs without growing again.
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > this.keys.length) {
+      this.resize(capacityFor(capacity));
+    } // if
+  } // ensureCapacity(int)
 
-    if (numOfPairs == 0) {
-      // If the array is empty, then add one element to the first index 
-      KVPair<K,V> newPair = (KVPair<K,V>) new KVPair<K,V>(key, value);
-      this.pairs[0] = newPair;
-      this.size++;
+  /**
+   * Set the value associated with key, whose hash is hash, to value.
+   */
+  private void put(K key, V value, int hash) {
+    int slot = this.findSlot(key, hash);
+
+    if (slot != -1) {
+      int keyIndex = this.index[slot];
+      // There already exists an entry with the specified key, so just
+      // update that entry's value
+      this.values[keyIndex] = value;
+      return;
+    } // if
+
+    // Otherwise, add a new entry to the array
+    int newIndex;
+
+    if (this.free != -1) {
+      // Fill the most recently made hole
+      newIndex = this.free;
+      this.free = this.hashes[newIndex];
     } else {
-      // Determine if a new entry will be added (anywhere in the array that is
-      // null) or if the value of the entry with the specified key will be 
-      // replaced by a new value
-      try {
-        int keyIndex = this.find(key);
-        // If no exception was caught from the line above, that means there 
-        // already exists an entry with the specified key, so just update that
-        // entry's value
-        this.pairs[keyIndex].value = value;
-      } catch (KeyNotFoundException knfe) {
-        // If an exception was caught, then there isn't a current entry in 
-        // the array with the specified key, so add a new entry to the array
-        KVPair<K,V> newPair = (KVPair<K,V>) new KVPair<K,V>(key, value);
-
-        // Check if associative array is full first
-        if (numOfPairs == this.pairs.length) {
-          int nextEntryIndex = numOfPairs;
-
-          // Expand array, insert new pair in expanded array, and increase 
-          // the size field of the expanded array
-          this.expand();
-          this.pairs[nextEntryIndex] = newPair; 
-          this.size++; 
-        } else {
-          // Since associative array is not full
-          int i = 0;
-
-          // Insert new pair at the first null space in the array
-          while (this.pairs[i] != null) {
-            ++i;
-          } // while
-          this.pairs[i] = newPair;
-          this.size++;
-        } // if/else
-      } // try/catch
+      // No holes, so the new pair goes right after the last one
+      if (this.high == this.keys.length) {
+        this.expand();
+      } // if
+      newIndex = this.high++;
     } // if/else
-  } // set(K,V)
+    this.keys[newIndex] = (key == null) ? NULL_KEY : key;
+    this.values[newIndex] = value;
+    this.hashes[newIndex] = hash;
+    this.size++;
+    this.indexInsert(hash, newIndex);
+  } // put(K, V, int)
 
   /**
    * Get the value associated with key.
@@ -185,41 +303,72 @@ public class AssociativeArray<K, V> {
     // Find (if there it exists) the index of the pair with the specified key in the array
     int keyIndex = this.find(key);
     // Reference that key's value
-    return this.pairs[keyIndex].value;
+    return this.valueAt(keyIndex);
   } // get(K)
 
   /**
    * Determine if key appears in the associative array.
    */
   public boolean hasKey(K key) {
-    try {
-      // If the key is found in the array, then return true
-      this.find(key); 
-      return true;
-    } catch (KeyNotFoundException knfe) {
-      // If the key cannot be found in the array, then prepare to 
-      // catch the KeyNotFoundException it will throw
-      
-      // Return false to indicate there is no such key in the array
-      return false;
-    } // try/catch     
+    return this.containsKey(key);
   } // hasKey(K)
 
+  /**
+   * Determine if key appears in the associative array. Unlike `get`,
+   * a miss neither throws nor allocates.
+   */
+  public boolean containsKey(K key) {
+    return this.findSlot(key) != -1;
+  } // containsKey(K)
+
+  /**
+   * Get the value associated with key, or defaultValue if the key
+   * does not appear in the associative array.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    int keyIndex = this.indexOf(key);
+    return (keyIndex == -1) ? defaultValue : this.valueAt(keyIndex);
+  } // getOrDefault(K, V)
+
+  /**
+   * Find the position of key in the associative array, or -1 if
+   * the key does not appear in it. Positions stay put until the
+   * key is removed (or `trimToSize` or `trimIfSparse` is called).
+   */
+  public int indexOf(K key) {
+    int slot = this.findSlot(key);
+    return (slot == -1) ? -1 : this.index[slot];
+  } // indexOf(K)
+
   /**
    * Remove the key/value pair associated with a key. Future calls
    * to get(key) will throw an exception. If the key does not appear
    * in the associative array, does nothing.
    */
   public void remove(K key) {
-    try {
-      // This will replace the pair with null at the index where the key 
-      // of the pair is found
-      int keyIndex = this.find(key);
-      this.pairs[keyIndex] = null;
-      this.size--;
-    } catch (KeyNotFoundException knfe) {
+    int slot = this.findSlot(key);
+
+    if (slot == -1) {
       // Does nothing since there is no entry with specified key
-    } // try/catch
+      return;
+    } // if
+
+    // Replace the pair with null and retire its slot in the index
+    int keyIndex = this.index[slot];
+    this.keys[keyIndex] = null;
+    this.values[keyIndex] = null;
+    this.index[slot] = DELETED;
+    this.deleted++;
+    this.size--;
+
+    // Put the hole on the free list
+    this.hashes[keyIndex] = this.free;
+    this.free = keyIndex;
+
+    if (this.deleted > this.index.length / 4) {
+      // Too many DELETED slots make misses slow, so rebuild the index
+      this.rebuildIndex(this.index.length);
+    } // if
   } // remove(K)
 
   /**
@@ -229,6 +378,67 @@ public class AssociativeArray<K, V> {
     return this.size;
   } // size()
 
+  /**
+   * Remove all the holes left by removals and shrink the underlying
+   * arrays to the smallest capacity that holds the current pairs.
+   * Pairs keep their relative order, but move to new positions (so
+   * positions from `indexOf` are no longer valid). Call it after
+   * removing many pairs.
+   */
+  public void trimToSize() {
+    int capacity = capacityFor(this.size);
+    if (capacity != this.keys.length || this.size != this.high) {
+      this.compact(capacity);
+    } // if
+  } // trimToSize()
+
+  /**
+   * Call `trimToSize` if fewer than a quarter of the underlying arrays
+   * hold pairs. Calling this after each removal keeps the arrays in
+   * proportion to the pairs, at an amortized constant cost (after a
+   * trim, at least a quarter of the new capacity must be removed before
+   * the next one). Only for owners that do not hold on to positions
+   * from `indexOf`.
+   *
+   * @return true if the arrays were trimmed.
+   */
+  public boolean trimIfSparse() {
+    if (this.keys.length > DEFAULT_CAPACITY && this.size < this.keys.length / 4) {
+      this.trimToSize();
+      return true;
+    } // if
+    return false;
+  } // trimIfSparse()
+
+  /**
+   * Get a read-only view of the keys, in order. The view reflects later
+   * changes to the associative array, but must not be iterated while
+   * the array is being changed.
+   */
+  public Collection<K> keys() {
+    return new View<K>(this::keyAt) {
+      public boolean contains(Object o) {
+        return AssociativeArray.this.findSlot(o) != -1;
+      } // contains(Object)
+    };
+  } // keys()
+
+  /**
+   * Get a read-only view of the values, in the same order as `keys()`.
+   */
+  public Collection<V> values() {
+    return new View<V>(this::valueAt);
+  } // values()
+
+  /**
+   * Get a read-only view of the key/value pairs, in the same order as
+   * `keys()`. Each pair is a fresh copy; changing it does not change
+   * the associative array.
+   */
+  public Collection<KVPair<K, V>> entries() {
+    return new View<KVPair<K, V>>((i) -> new KVPair<K, V>(this.keyAt(i), this.valueAt(i)));
+  } // entries()
+
   /**
    * Finds and returns all the keys in the associative array as strings.
    */
@@ -240,9 +450,9 @@ public class AssociativeArray<K, V> {
 
     if (numOfPairs != 0) { // Only add keys in the array of keys if the arr is not empty
       while (pairsAdded != numOfPairs) { // Keep looping if not all pairs in arr have been seen
-        if (this.pairs[i] != null) { // If there is an non-null pair in the array,
+        if (this.keys[i] != null) { // If there is an non-null pair in the array,
           // Add the key to the array of keys
-          allKeys[i] = (String) this.pairs[i].key;
+          allKeys[i] = (String) this.keyAt(i);
           pairsAdded++;
         } // if
           i++;
@@ -260,46 +470,344 @@ public class AssociativeArray<K, V> {
    * Expand the underlying array.
    */
   private void expand() {
-    // Double the size of the current array
-    this.pairs = java.util.Arrays.copyOf(this.pairs, this.pairs.length * 2);
+    // Double the size of the current arrays (and the index along with them)
+    this.resize(this.keys.length * 2);
   } // expand()
 
   /**
-   * Find the index of the first entry in `pairs` that contains key.
+   * Move the pairs, in place, into arrays with the given capacity (which
+   * must be a power of two at least `high`), then rebuild the index.
+   */
+  private void resize(int capacity) {
+    this.keys = Arrays.copyOf(this.keys, capacity);
+    this.values = Arrays.copyOf(this.values, capacity);
+    this.hashes = Arrays.copyOf(this.hashes, capacity);
+    this.rebuildIndex(capacity * 2);
+  } // resize(int)
+
+  /**
+   * Slide the pairs down over any holes into arrays with the given
+   * capacity (which must be a power of two that holds every pair),
+   * then rebuild the index.
+   */
+  private void compact(int capacity) {
+    Object[] newKeys = new Object[capacity];
+    Object[] newValues = new Object[capacity];
+    int[] newHashes = new int[capacity];
+    int j = 0;
+
+    for (int i = 0; i < this.high; i++) {
+      if (this.keys[i] != null) {
+        newKeys[j] = this.keys[i];
+        newValues[j] = this.values[i];
+        newHashes[j] = this.hashes[i];
+        j++;
+      } // if
+    } // for
+    this.keys = newKeys;
+    this.values = newValues;
+    this.hashes = newHashes;
+    this.high = j;
+    this.free = -1;
+    this.rebuildIndex(capacity * 2);
+  } // compact(int)
+
+  /**
+   * Find the index of the entry in `keys` that contains key.
    * If no such entry is found, throws an exception.
    */
   private int find(K key) throws KeyNotFoundException {
-    int numOfPairs = this.size;
+    int keyIndex = this.indexOf(key);
 
-    if (numOfPairs == 0) {
-      // If the array is empty, there is no key to be found
+    if (keyIndex == -1) { // The key doesn't exist
       throw new KeyNotFoundException();
     } // if
+    return keyIndex;
+  } // find(K)
 
-    // Otherwise, the array has entries in it
-    int i = 0;
-    int keyIndex = -1;
-    int pairsTraversed = 0;
-
-    // Keep traversing the array while the end has not been reached and 
-    // the key has not been found
-    while (keyIndex == -1 && pairsTraversed != numOfPairs) {
-      if (this.pairs[i] != null) {
-        // Only look at the entries in the array (not null parts of the array)
-        if (this.pairs[i].key.equals(key)) {
-          // If the current entry's key matches the one being searched for,
-          // save that entry's index
-          keyIndex = i;
-        } // if
-        ++pairsTraversed;
+  /**
+   * Find the slot in `index` that refers to the pair containing key,
+   * or -1 if there is no such pair.
+   */
+  private int findSlot(Object key) {
+    return this.findSlot(key, hash(key));
+  } // findSlot(Object)
+
+  /**
+   * Find the slot in `index` that refers to the pair containing key,
+   * whose hash is hash, or -1 if there is no such pair.
+   */
+  private int findSlot(Object key, int hash) {
+    Object stored = (key == null) ? NULL_KEY : key;
+    int mask = this.index.length - 1;
+    int slot = hash & mask;
+
+    // Linear probing; the index always has EMPTY slots, so this stops
+    while (true) {
+      int keyIndex = this.index[slot];
+      if (keyIndex == EMPTY) {
+        return -1;
+      } // if
+      // Compare the cached hashes first so that most mismatches skip equals
+      if (keyIndex != DELETED && this.hashes[keyIndex] == hash
+          && equal(this.keys[keyIndex], stored)) {
+        return slot;
       } // if
-      ++i;
+      slot = (slot + 1) & mask;
     } // while
+  } // findSlot(Object, int)
 
-    if (keyIndex != -1) { // If the key was found, return the index at which it was found
-      return keyIndex;
-    } else { // Otherwise, throw a KeyNotFoundException (the key doesn't exist)
-      throw new KeyNotFoundException();
-    } // if/else
-  } // find(K)
+  /**
+   * Record in the index that the pair at position keyIndex in `keys`
+   * has the given hash. Assumes that key is not already in the index.
+   */
+  private void indexInsert(int hash, int keyIndex) {
+    int mask = this.index.length - 1;
+    int slot = hash & mask;
+
+    while (this.index[slot] >= 0) {
+      slot = (slot + 1) & mask;
+    } // while
+    if (this.index[slot] == DELETED) {
+      this.deleted--;
+    } // if
+    this.index[slot] = keyIndex;
+  } // indexInsert(int, int)
+
+  /**
+   * Rebuild the index from scratch with the given number of slots,
+   * dropping any DELETED slots.
+   */
+  private void rebuildIndex(int capacity) {
+    this.index = newIndex(capacity);
+    this.deleted = 0;
+    for (int i = 0; i < this.high; i++) {
+      if (this.keys[i] != null) {
+        this.indexInsert(this.hashes[i], i);
+      } // if
+    } // for
+  } // rebuildIndex(int)
+
+  /**
+   * Find the next position at or after i (and before end) that holds
+   * a pair, or end if there is none.
+   */
+  private int nextPosition(int i, int end) {
+    while (i < end && this.keys[i] == null) {
+      i++;
+    } // while
+    return i;
+  } // nextPosition(int, int)
+
+  /**
+   * Get the key stored at position i of `keys`.
+   */
+  @SuppressWarnings({ "unchecked" })
+  K keyAt(int i) {
+    Object key = this.keys[i];
+    return (key == NULL_KEY) ? null : (K) key;
+  } // keyAt(int)
+
+  /**
+   * Get the value stored at position i of `values`.
+   */
+  @SuppressWarnings({ "unchecked" })
+  V valueAt(int i) {
+    return (V) this.values[i];
+  } // valueAt(int)
+
+  /**
+   * Find the capacity (a power of two, and at least DEFAULT_CAPACITY)
+   * that holds size pairs.
+   */
+  static int capacityFor(int size) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity < size && capacity < (1 << 30)) {
+      capacity *= 2;
+    } // while
+    return capacity;
+  } // capacityFor(int)
+
+  /**
+   * Create an index with every slot EMPTY.
+   */
+  private static int[] newIndex(int capacity) {
+    int[] result = new int[capacity];
+    Arrays.fill(result, EMPTY);
+    return result;
+  } // newIndex(int)
+
+  /**
+   * Compute the (spread) hash code of a key.
+   */
+  static int hash(Object key) {
+    if (key == null) {
+      return 0;
+    } // if
+    int h = key.hashCode();
+    // Mix the high bits into the low bits, since we mask with the low bits
+    return h ^ (h >>> 16);
+  } // hash(Object)
+
+  /**
+   * Determine if two keys are equal.
+   */
+  static boolean equal(Object stored, Object key) {
+    return (stored == key) || (stored != null && stored.equals(key));
+  } // equal(Object, Object)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A read-only view of one part (keys, values, or pairs) of the
+   * associative array, given by the element found at each position.
+   */
+  private class View<T> extends AbstractCollection<T> {
+    /**
+     * The element at each position.
+     */
+    final IntFunction<T> element;
+
+    View(IntFunction<T> element) {
+      this.element = element;
+    } // View(IntFunction<T>)
+
+    public int size() {
+      return AssociativeArray.this.size;
+    } // size()
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        int next = AssociativeArray.this.nextPosition(0, AssociativeArray.this.high);
+
+        public boolean hasNext() {
+          return this.next < AssociativeArray.this.high;
+        } // hasNext()
+
+        public T next() {
+          if (!this.hasNext()) {
+            throw new NoSuchElementException();
+          } // if
+          T result = View.this.element.apply(this.next);
+          this.next = AssociativeArray.this.nextPosition(this.next + 1,
+              AssociativeArray.this.high);
+          return result;
+        } // next()
+      };
+    } // iterator()
+
+    public Spliterator<T> spliterator() {
+      AssociativeArray<K, V> array = AssociativeArray.this;
+      // With no holes, every range of positions has an exact size
+      boolean dense = (array.size == array.high);
+      return new PositionSpliterator<T>(this.element, 0, array.high, array.size, dense);
+    } // spliterator()
+  } // class View<T>
+
+  /**
+   * Splits the positions [start, end) of the associative array in half
+   * for parallel streams.
+   */
+  private class PositionSpliterator<T> implements Spliterator<T> {
+    /**
+     * The element at each position.
+     */
+    final IntFunction<T> element;
+
+    /**
+     * The next position to look at.
+     */
+    int start;
+
+    /**
+     * One past the last position to look at.
+     */
+    final int end;
+
+    /**
+     * The (estimated) number of pairs in [start, end).
+     */
+    long estimate;
+
+    /**
+     * Whether [start, end) has no holes, making every split exact.
+     */
+    final boolean dense;
+
+    /**
+     * Whether `estimate` is exact. It is for the whole array, but after
+     * splitting around holes, it is only a guess.
+     */
+    boolean exact;
+
+    PositionSpliterator(IntFunction<T> element, int start, int end, long estimate,
+        boolean dense) {
+      this.element = element;
+      this.start = start;
+      this.end = end;
+      this.estimate = estimate;
+      this.dense = dense;
+      this.exact = true;
+    } // PositionSpliterator(IntFunction<T>, int, int, long, boolean)
+
+    public boolean tryAdvance(Consumer<? super T> action) {
+      this.start = AssociativeArray.this.nextPosition(this.start, this.end);
+      if (this.start >= this.end) {
+        return false;
+      } // if
+      action.accept(this.element.apply(this.start++));
+      if (this.estimate > 0) {
+        this.estimate--;
+      } // if
+      return true;
+    } // tryAdvance(Consumer<? super T>)
+
+    public void forEachRemaining(Consumer<? super T> action) {
+      Object[] keys = AssociativeArray.this.keys;
+      for (int i = this.start; i < this.end; i++) {
+        if (keys[i] != null) {
+          action.accept(this.element.apply(i));
+        } // if
+      } // for
+      this.start = this.end;
+      this.estimate = 0;
+    } // forEachRemaining(Consumer<? super T>)
+
+    public Spliterator<T> trySplit() {
+      int mid = (this.start + this.end) >>> 1;
+      if (mid <= this.start) {
+        return null;
+      } // if
+      long firstHalf;
+      if (this.dense) {
+        firstHalf = mid - this.start;
+      } else {
+        firstHalf = this.estimate / 2;
+      } // if/else
+      PositionSpliterator<T> prefix =
+          new PositionSpliterator<T>(this.element, this.start, mid, firstHalf, this.dense);
+      prefix.exact = this.dense;
+      this.exact = this.dense;
+      this.start = mid;
+      this.estimate -= firstHalf;
+      return prefix;
+    } // trySplit()
+
+    public long estimateSize() {
+      return this.estimate;
+    } // estimateSize()
+
+    public int characteristics() {
+      int characteristics = Spliterator.ORDERED;
+      if (this.exact) {
+        characteristics |= Spliterator.SIZED;
+      } // if
+      if (this.dense) {
+        characteristics |= Spliterator.SUBSIZED;
+      } // if
+      return characteristics;
+    } // characteristics()
+  } // class PositionSpliterator<T>
 } // class AssociativeArray
\ No newline at end of file
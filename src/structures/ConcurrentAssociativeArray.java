@@ -0,0 +1,349 @@
+package structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An associative array that many threads may use at once, with the same
+ * methods as AssociativeArray. Reads never lock. Writes lock only the
+ * part of the table that holds their key (or update it with a CAS), so
+ * writers to different keys rarely wait on each other.
+ *
+ * Pairs are enumerated in the order they were added. Enumeration is
+ * weakly consistent: it never fails, and it sees every pair that was
+ * present for the whole walk, but it may or may not see pairs that were
+ * added or removed during the walk.
+ *
+ * @author Wenfei Lin
+ */
+public class ConcurrentAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Stands in for a null key, since ConcurrentHashMap has no null keys.
+   */
+  static final Object NULL_KEY = new Object();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pairs, by key (null keys are stored as NULL_KEY).
+   */
+  ConcurrentHashMap<Object, Node<K, V>> table;
+
+  /**
+   * The same pairs, by the order in which they were added.
+   */
+  ConcurrentSkipListMap<Long, Node<K, V>> order;
+
+  /**
+   * The number handed to the next pair that is added.
+   */
+  AtomicLong nextSequence;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public ConcurrentAssociativeArray() {
+    this.table = new ConcurrentHashMap<Object, Node<K, V>>();
+    this.order = new ConcurrentSkipListMap<Long, Node<K, V>>();
+    this.nextSequence = new AtomicLong();
+  } // ConcurrentAssociativeArray()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array (of the pairs it holds
+   * while the copy is being made).
+   */
+  public ConcurrentAssociativeArray<K, V> clone() {
+    ConcurrentAssociativeArray<K, V> clonedAssociativeArray =
+        new ConcurrentAssociativeArray<K, V>();
+    for (Iterator<Node<K, V>> nodes = this.nodes(); nodes.hasNext(); ) {
+      Node<K, V> node = nodes.next();
+      clonedAssociativeArray.set(node.key, node.value);
+    } // for
+    return clonedAssociativeArray;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder keyValuePairs = new StringBuilder();
+    try {
+      this.writeTo(keyValuePairs);
+    } catch (IOException e) {
+      // StringBuilder never throws IOException
+      throw new UncheckedIOException(e);
+    } // try/catch
+    return keyValuePairs.toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Write the array to out in the same format as `toString()`, one
+   * piece at a time, without building the whole string first.
+   *
+   * @throws IOException
+   *                     when out cannot be written to.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    // Format: "{ key0: value0, key1: value1, ... keyn: valuen }"
+    boolean first = true;
+
+    out.append('{');
+    for (Iterator<Node<K, V>> nodes = this.nodes(); nodes.hasNext(); ) {
+      Node<K, V> node = nodes.next();
+      out.append(first ? " " : ", ");
+      out.append(String.valueOf(node.key)).append(": ").append(String.valueOf(node.value));
+      first = false;
+    } // for
+    if (!first) {
+      out.append(' ');
+    } // if
+    out.append('}');
+  } // writeTo(Appendable)
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    Object stored = mask(key);
+    Node<K, V> node = this.table.get(stored);
+
+    // Most sets of an existing key need nothing more than a volatile write
+    if (node == null) {
+      Node<K, V> newNode = new Node<K, V>(this.nextSequence.getAndIncrement(), key, value);
+      // Ordered before it is in the table, so that once a remove can find it
+      // in the table, the remove can also take it out of the order
+      this.order.put(newNode.sequence, newNode);
+      node = this.table.putIfAbsent(stored, newNode);
+      if (node == null) {
+        newNode.published = true;
+        return;
+      } // if
+      // Another thread added the key first
+      this.order.remove(newNode.sequence);
+    } // if
+    node.value = value;
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *                              when the key does not appear in the associative
+   *                              array.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    Node<K, V> node = this.table.get(mask(key));
+    if (node == null) {
+      throw new KeyNotFoundException();
+    } // if
+    return node.value;
+  } // get(K)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.containsKey(key);
+  } // hasKey(K)
+
+  /**
+   * Determine if key appears in the associative array, without throwing
+   * or allocating on a miss.
+   */
+  public boolean containsKey(K key) {
+    return this.table.containsKey(mask(key));
+  } // containsKey(K)
+
+  /**
+   * Get the value associated with key, or defaultValue if the key
+   * does not appear in the associative array.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    Node<K, V> node = this.table.get(mask(key));
+    return (node == null) ? defaultValue : node.value;
+  } // getOrDefault(K, V)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    Node<K, V> node = this.table.remove(mask(key));
+    if (node != null) {
+      this.order.remove(node.sequence);
+    } // if
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.table.size();
+  } // size()
+
+  /**
+   * Get a read-only view of the keys, in order.
+   */
+  public Collection<K> keys() {
+    return new View<K>((node) -> node.key);
+  } // keys()
+
+  /**
+   * Get a read-only view of the values, in the same order as `keys()`.
+   */
+  public Collection<V> values() {
+    return new View<V>((node) -> node.value);
+  } // values()
+
+  /**
+   * Get a read-only view of the key/value pairs, in the same order as
+   * `keys()`. Each pair is a fresh copy.
+   */
+  public Collection<KVPair<K, V>> entries() {
+    return new View<KVPair<K, V>>((node) -> new KVPair<K, V>(node.key, node.value));
+  } // entries()
+
+  /**
+   * Finds and returns all the keys in the associative array as strings.
+   * Unlike AssociativeArray, there are never null holes.
+   */
+  public String[] getKeysForAAC() {
+    ArrayList<String> allKeys = new ArrayList<String>(this.table.size());
+    for (Iterator<Node<K, V>> nodes = this.nodes(); nodes.hasNext(); ) {
+      allKeys.add((String) nodes.next().key);
+    } // for
+    return allKeys.toArray(new String[allKeys.size()]);
+  } // getKeysForAAC()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Convert a key to the form stored in the table.
+   */
+  private static Object mask(Object key) {
+    return (key == null) ? NULL_KEY : key;
+  } // mask(Object)
+
+  /**
+   * Iterate over the nodes in order, skipping any that are not (yet, or
+   * ever) in the table.
+   */
+  private Iterator<Node<K, V>> nodes() {
+    Iterator<Node<K, V>> ordered = this.order.values().iterator();
+    return new Iterator<Node<K, V>>() {
+      Node<K, V> next = this.advance();
+
+      public boolean hasNext() {
+        return this.next != null;
+      } // hasNext()
+
+      public Node<K, V> next() {
+        if (this.next == null) {
+          throw new NoSuchElementException();
+        } // if
+        Node<K, V> result = this.next;
+        this.next = this.advance();
+        return result;
+      } // next()
+
+      /**
+       * Find the next published node, or null if there is none.
+       */
+      private Node<K, V> advance() {
+        while (ordered.hasNext()) {
+          Node<K, V> node = ordered.next();
+          if (node.published) {
+            return node;
+          } // if
+        } // while
+        return null;
+      } // advance()
+    };
+  } // nodes()
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A key/value pair, along with its place in the order. The value can
+   * change, but the pair stays put until its key is removed.
+   */
+  static class Node<K, V> {
+    final long sequence;
+    final K key;
+    volatile V value;
+    // Whether it made it into the table (a node that lost a race to add
+    // the same key is in the order only briefly, and never published)
+    volatile boolean published;
+
+    Node(long sequence, K key, V value) {
+      this.sequence = sequence;
+      this.key = key;
+      this.value = value;
+    } // Node(long, K, V)
+  } // class Node<K, V>
+
+  /**
+   * A read-only view of one part (keys, values, or pairs) of the
+   * associative array.
+   */
+  private class View<T> extends AbstractCollection<T> {
+    /**
+     * The element for each node.
+     */
+    final Function<Node<K, V>, T> element;
+
+    View(Function<Node<K, V>, T> element) {
+      this.element = element;
+    } // View(Function<Node<K, V>, T>)
+
+    public int size() {
+      return ConcurrentAssociativeArray.this.size();
+    } // size()
+
+    public Iterator<T> iterator() {
+      Iterator<Node<K, V>> nodes = ConcurrentAssociativeArray.this.nodes();
+      return new Iterator<T>() {
+        public boolean hasNext() {
+          return nodes.hasNext();
+        } // hasNext()
+
+        public T next() {
+          return View.this.element.apply(nodes.next());
+        } // next()
+      };
+    } // iterator()
+  } // class View<T>
+} // class ConcurrentAssociativeArray
@@ -2,9 +2,10 @@ package structures;
 
 /**
  * An easy way to store key/value pairs.  We assume that other
- * classes will access fields directly.
+ * classes in this package will access fields directly; classes
+ * elsewhere use the getters.
  */
-class KVPair<K,V> {
+public class KVPair<K,V> {
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -33,11 +34,29 @@ class KVPair<K,V> {
   /**
    * Create a new key/value pair.
    */
-  KVPair(K key, V value) {
+  public KVPair(K key, V value) {
     this.key = key;
     this.value = value;
   } // KVPair(K,V)
 
+  // +---------+-----------------------------------------------------
+  // | Getters |
+  // +---------+
+
+  /**
+   * Get the key.
+   */
+  public K getKey() {
+    return this.key;
+  } // getKey()
+
+  /**
+   * Get the value.
+   */
+  public V getValue() {
+    return this.value;
+  } // getValue()
+
   // +------------------+--------------------------------------------
   // | Standard methods |
   // +------------------+
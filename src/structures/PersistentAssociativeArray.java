@@ -0,0 +1,584 @@
+package structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * An associative array whose snapshots are free. It has the same methods
+ * as AssociativeArray, plus `snapshot()`, which takes O(1) time and
+ * space: the pairs live in an immutable hash array mapped trie (HAMT),
+ * so `set` and `remove` copy only the path from the root to the pair
+ * they change, and every earlier snapshot keeps its own root.
+ *
+ * Each level of the trie uses five more bits of the key's hash. A
+ * branch stores only the children that exist, found through a 32-bit
+ * bitmap. Keys whose full hashes are equal share a collision node.
+ *
+ * Pairs are enumerated in the order they were added. The trie itself
+ * is ordered by hash, so enumeration sorts the pairs first, which costs
+ * O(n log n) rather than O(n).
+ *
+ * @author Wenfei Lin
+ */
+public class PersistentAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of hash bits used at each level of the trie.
+   */
+  static final int BITS = 5;
+
+  /**
+   * Picks out BITS bits of a hash.
+   */
+  static final int MASK = (1 << BITS) - 1;
+
+  /**
+   * The root of an empty trie.
+   */
+  static final Branch EMPTY = new Branch(0, new Object[0]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the trie. Nodes are never changed once built, so they
+   * may be shared with any number of snapshots.
+   */
+  Branch root;
+
+  /**
+   * The size of the associative array (the number of key/value pairs).
+   */
+  int size;
+
+  /**
+   * The number handed to the next pair that is added.
+   */
+  long nextSequence;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public PersistentAssociativeArray() {
+    this.root = EMPTY;
+    this.size = 0;
+    this.nextSequence = 0;
+  } // PersistentAssociativeArray()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. Since nodes are shared,
+   * this is the same as `snapshot()`.
+   */
+  public PersistentAssociativeArray<K, V> clone() {
+    return this.snapshot();
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder keyValuePairs = new StringBuilder();
+    try {
+      this.writeTo(keyValuePairs);
+    } catch (IOException e) {
+      // StringBuilder never throws IOException
+      throw new UncheckedIOException(e);
+    } // try/catch
+    return keyValuePairs.toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Write the array to out in the same format as `toString()`, one
+   * piece at a time, without building the whole string first.
+   *
+   * @throws IOException
+   *                     when out cannot be written to.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    // Format: "{ key0: value0, key1: value1, ... keyn: valuen }"
+    boolean first = true;
+
+    out.append('{');
+    Leaf[] leaves = this.leavesInOrder();
+    for (int i = 0; i < leaves.length; i++) {
+      out.append((i == 0) ? " " : ", ");
+      out.append(String.valueOf(leaves[i].key)).append(": ").append(String.valueOf(leaves[i].value));
+      first = false;
+    } // for
+    if (!first) {
+      out.append(' ');
+    } // if
+    out.append('}');
+  } // writeTo(Appendable)
+
+  /**
+   * Take a snapshot of the associative array in O(1). Later changes to
+   * this array do not show up in the snapshot, and changes to the
+   * snapshot do not show up here.
+   */
+  public PersistentAssociativeArray<K, V> snapshot() {
+    PersistentAssociativeArray<K, V> snapshot = new PersistentAssociativeArray<K, V>();
+    snapshot.root = this.root;
+    snapshot.size = this.size;
+    snapshot.nextSequence = this.nextSequence;
+    return snapshot;
+  } // snapshot()
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    int hash = AssociativeArray.hash(key);
+    Leaf existing = find(this.root, hash, key, 0);
+
+    if (existing != null) {
+      // Keep the pair's place in the order
+      this.root = (Branch) put(this.root, new Leaf(key, value, hash, existing.sequence), 0);
+    } else {
+      this.root = (Branch) put(this.root, new Leaf(key, value, hash, this.nextSequence++), 0);
+      this.size++;
+    } // if/else
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *                              when the key does not appear in the associative
+   *                              array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    Leaf leaf = find(this.root, AssociativeArray.hash(key), key, 0);
+    if (leaf == null) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) leaf.value;
+  } // get(K)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.containsKey(key);
+  } // hasKey(K)
+
+  /**
+   * Determine if key appears in the associative array, without throwing
+   * or allocating on a miss.
+   */
+  public boolean containsKey(K key) {
+    return find(this.root, AssociativeArray.hash(key), key, 0) != null;
+  } // containsKey(K)
+
+  /**
+   * Get the value associated with key, or defaultValue if the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    Leaf leaf = find(this.root, AssociativeArray.hash(key), key, 0);
+    return (leaf == null) ? defaultValue : (V) leaf.value;
+  } // getOrDefault(K, V)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    Object newRoot = remove(this.root, AssociativeArray.hash(key), key, 0);
+
+    if (newRoot != this.root) {
+      this.root = (newRoot == null) ? EMPTY : (Branch) newRoot;
+      this.size--;
+    } // if
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get a read-only view of the keys, in order, as of this call.
+   */
+  public Collection<K> keys() {
+    return new View<K>(this.leavesInOrder(), (leaf) -> leaf.key);
+  } // keys()
+
+  /**
+   * Get a read-only view of the values, in the same order as `keys()`,
+   * as of this call.
+   */
+  public Collection<V> values() {
+    return new View<V>(this.leavesInOrder(), (leaf) -> leaf.value);
+  } // values()
+
+  /**
+   * Get a read-only view of the key/value pairs, in the same order as
+   * `keys()`, as of this call. Each pair is a fresh copy.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public Collection<KVPair<K, V>> entries() {
+    return new View<KVPair<K, V>>(this.leavesInOrder(),
+        (leaf) -> new KVPair<K, V>((K) leaf.key, (V) leaf.value));
+  } // entries()
+
+  /**
+   * Finds and returns all the keys in the associative array as strings.
+   * Unlike AssociativeArray, there are never null holes.
+   */
+  public String[] getKeysForAAC() {
+    Leaf[] leaves = this.leavesInOrder();
+    String[] allKeys = new String[leaves.length];
+    for (int i = 0; i < leaves.length; i++) {
+      allKeys[i] = (String) leaves[i].key;
+    } // for
+    return allKeys;
+  } // getKeysForAAC()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Gather every leaf of the trie, in the order the pairs were added.
+   */
+  private Leaf[] leavesInOrder() {
+    Leaf[] leaves = new Leaf[this.size];
+    collect(this.root, leaves, 0);
+    Arrays.sort(leaves, Comparator.comparingLong((Leaf leaf) -> leaf.sequence));
+    return leaves;
+  } // leavesInOrder()
+
+  /**
+   * Put the leaves under node into leaves, starting at position next.
+   * Returns the position after the last leaf put there.
+   */
+  private static int collect(Object node, Leaf[] leaves, int next) {
+    if (node instanceof Leaf) {
+      leaves[next++] = (Leaf) node;
+    } else if (node instanceof Collision) {
+      for (Leaf leaf : ((Collision) node).leaves) {
+        leaves[next++] = leaf;
+      } // for
+    } else {
+      for (Object child : ((Branch) node).children) {
+        next = collect(child, leaves, next);
+      } // for
+    } // if/else
+    return next;
+  } // collect(Object, Leaf[], int)
+
+  /**
+   * Find the leaf for key under node, which is at the given depth
+   * (in bits) of the trie, or null if there is none.
+   */
+  private static Leaf find(Object node, int hash, Object key, int shift) {
+    while (true) {
+      if (node instanceof Leaf) {
+        Leaf leaf = (Leaf) node;
+        return (leaf.hash == hash && AssociativeArray.equal(leaf.key, key)) ? leaf : null;
+      } else if (node instanceof Collision) {
+        return ((Collision) node).find(hash, key);
+      } // if/else
+      Branch branch = (Branch) node;
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((branch.bitmap & bit) == 0) {
+        return null;
+      } // if
+      node = branch.children[branch.position(bit)];
+      shift += BITS;
+    } // while
+  } // find(Object, int, Object, int)
+
+  /**
+   * Add leaf under node (replacing any leaf with the same key), which is
+   * at the given depth of the trie. Returns the new node; node itself
+   * is left alone.
+   */
+  private static Object put(Object node, Leaf leaf, int shift) {
+    if (node instanceof Leaf) {
+      Leaf old = (Leaf) node;
+      if (old.hash == leaf.hash) {
+        return AssociativeArray.equal(old.key, leaf.key)
+            ? leaf
+            : new Collision(leaf.hash, new Leaf[] { old, leaf });
+      } // if
+      return merge(old, old.hash, leaf, leaf.hash, shift);
+    } else if (node instanceof Collision) {
+      Collision collision = (Collision) node;
+      if (collision.hash == leaf.hash) {
+        return collision.put(leaf);
+      } // if
+      return merge(collision, collision.hash, leaf, leaf.hash, shift);
+    } // if/else
+
+    Branch branch = (Branch) node;
+    int bit = 1 << ((leaf.hash >>> shift) & MASK);
+    int position = branch.position(bit);
+    if ((branch.bitmap & bit) == 0) {
+      return branch.insert(bit, position, leaf);
+    } // if
+    return branch.replace(position, put(branch.children[position], leaf, shift + BITS));
+  } // put(Object, Leaf, int)
+
+  /**
+   * Make the smallest subtrie, at the given depth, that holds two nodes
+   * with different hashes.
+   */
+  private static Object merge(Object a, int hashA, Object b, int hashB, int shift) {
+    int bitA = 1 << ((hashA >>> shift) & MASK);
+    int bitB = 1 << ((hashB >>> shift) & MASK);
+
+    if (bitA == bitB) {
+      return new Branch(bitA, new Object[] { merge(a, hashA, b, hashB, shift + BITS) });
+    } else if (Integer.compareUnsigned(bitA, bitB) < 0) {
+      return new Branch(bitA | bitB, new Object[] { a, b });
+    } else {
+      return new Branch(bitA | bitB, new Object[] { b, a });
+    } // if/else
+  } // merge(Object, int, Object, int, int)
+
+  /**
+   * Remove the leaf for key under node, which is at the given depth of
+   * the trie. Returns node itself if there is no such leaf, null if
+   * nothing is left, and otherwise the new node.
+   */
+  private static Object remove(Object node, int hash, Object key, int shift) {
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      return (leaf.hash == hash && AssociativeArray.equal(leaf.key, key)) ? null : node;
+    } else if (node instanceof Collision) {
+      return ((Collision) node).remove(hash, key);
+    } // if/else
+
+    Branch branch = (Branch) node;
+    int bit = 1 << ((hash >>> shift) & MASK);
+    if ((branch.bitmap & bit) == 0) {
+      return node;
+    } // if
+    int position = branch.position(bit);
+    Object child = branch.children[position];
+    Object newChild = remove(child, hash, key, shift + BITS);
+
+    if (newChild == child) {
+      return node;
+    } else if (newChild != null) {
+      return branch.replace(position, newChild);
+    } else if (branch.children.length == 1) {
+      return null;
+    } // if/else
+
+    Branch smaller = branch.delete(bit, position);
+    // A lone leaf can move up to its parent (but the root stays a branch)
+    if (shift > 0 && smaller.children.length == 1 && !(smaller.children[0] instanceof Branch)) {
+      return smaller.children[0];
+    } // if
+    return smaller;
+  } // remove(Object, int, Object, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A key/value pair in the trie, along with its key's hash and its
+   * place in the order.
+   */
+  static final class Leaf {
+    final Object key;
+    final Object value;
+    final int hash;
+    final long sequence;
+
+    Leaf(Object key, Object value, int hash, long sequence) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.sequence = sequence;
+    } // Leaf(Object, Object, int, long)
+  } // class Leaf
+
+  /**
+   * An inner node of the trie. Bit i of the bitmap is set when there is
+   * a child for the hash bits i; the children are kept in bit order.
+   */
+  static final class Branch {
+    final int bitmap;
+    final Object[] children;
+
+    Branch(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    } // Branch(int, Object[])
+
+    /**
+     * Find where the child for bit is (or would go) in children.
+     */
+    int position(int bit) {
+      return Integer.bitCount(this.bitmap & (bit - 1));
+    } // position(int)
+
+    /**
+     * Make a copy of this branch with child added for bit.
+     */
+    Branch insert(int bit, int position, Object child) {
+      Object[] newChildren = new Object[this.children.length + 1];
+      System.arraycopy(this.children, 0, newChildren, 0, position);
+      newChildren[position] = child;
+      System.arraycopy(this.children, position, newChildren, position + 1,
+          this.children.length - position);
+      return new Branch(this.bitmap | bit, newChildren);
+    } // insert(int, int, Object)
+
+    /**
+     * Make a copy of this branch with the child at position replaced.
+     */
+    Branch replace(int position, Object child) {
+      Object[] newChildren = this.children.clone();
+      newChildren[position] = child;
+      return new Branch(this.bitmap, newChildren);
+    } // replace(int, Object)
+
+    /**
+     * Make a copy of this branch without the child for bit.
+     */
+    Branch delete(int bit, int position) {
+      Object[] newChildren = new Object[this.children.length - 1];
+      System.arraycopy(this.children, 0, newChildren, 0, position);
+      System.arraycopy(this.children, position + 1, newChildren, position,
+          newChildren.length - position);
+      return new Branch(this.bitmap & ~bit, newChildren);
+    } // delete(int, int)
+  } // class Branch
+
+  /**
+   * The leaves for keys whose hashes are all the same.
+   */
+  static final class Collision {
+    final int hash;
+    final Leaf[] leaves;
+
+    Collision(int hash, Leaf[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    } // Collision(int, Leaf[])
+
+    /**
+     * Find the leaf for key, or null if there is none.
+     */
+    Leaf find(int hash, Object key) {
+      if (hash == this.hash) {
+        for (Leaf leaf : this.leaves) {
+          if (AssociativeArray.equal(leaf.key, key)) {
+            return leaf;
+          } // if
+        } // for
+      } // if
+      return null;
+    } // find(int, Object)
+
+    /**
+     * Make a copy of this node with leaf added (or replacing the leaf
+     * with the same key).
+     */
+    Collision put(Leaf leaf) {
+      for (int i = 0; i < this.leaves.length; i++) {
+        if (AssociativeArray.equal(this.leaves[i].key, leaf.key)) {
+          Leaf[] newLeaves = this.leaves.clone();
+          newLeaves[i] = leaf;
+          return new Collision(this.hash, newLeaves);
+        } // if
+      } // for
+      Leaf[] newLeaves = Arrays.copyOf(this.leaves, this.leaves.length + 1);
+      newLeaves[this.leaves.length] = leaf;
+      return new Collision(this.hash, newLeaves);
+    } // put(Leaf)
+
+    /**
+     * Make a copy of this node without the leaf for key. Returns this
+     * node if there is no such leaf, and the last leaf if only one is
+     * left.
+     */
+    Object remove(int hash, Object key) {
+      Leaf leaf = this.find(hash, key);
+      if (leaf == null) {
+        return this;
+      } else if (this.leaves.length == 2) {
+        return (this.leaves[0] == leaf) ? this.leaves[1] : this.leaves[0];
+      } // if/else
+      Leaf[] newLeaves = new Leaf[this.leaves.length - 1];
+      int j = 0;
+      for (Leaf other : this.leaves) {
+        if (other != leaf) {
+          newLeaves[j++] = other;
+        } // if
+      } // for
+      return new Collision(this.hash, newLeaves);
+    } // remove(int, Object)
+  } // class Collision
+
+  /**
+   * A read-only view of one part (keys, values, or pairs) of a fixed
+   * set of leaves.
+   */
+  private static class View<T> extends AbstractCollection<T> {
+    final Leaf[] leaves;
+    final Function<Leaf, Object> element;
+
+    View(Leaf[] leaves, Function<Leaf, Object> element) {
+      this.leaves = leaves;
+      this.element = element;
+    } // View(Leaf[], Function<Leaf, Object>)
+
+    public int size() {
+      return this.leaves.length;
+    } // size()
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        int next = 0;
+
+        public boolean hasNext() {
+          return this.next < View.this.leaves.length;
+        } // hasNext()
+
+        @SuppressWarnings({ "unchecked" })
+        public T next() {
+          if (!this.hasNext()) {
+            throw new NoSuchElementException();
+          } // if
+          return (T) View.this.element.apply(View.this.leaves[this.next++]);
+        } // next()
+      };
+    } // iterator()
+  } // class View<T>
+} // class PersistentAssociativeArray
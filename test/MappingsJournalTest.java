@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for MappingsJournal: edits journaled to a mappings file come back
+ * when the file is opened again, and after the journal is compacted into it.
+ *
+ * @author Wenfei Lin
+ */
+public class MappingsJournalTest {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * A category name and an item text with spaces, a tab, and a backslash in them.
+   */
+  static final String CATEGORY = "things to eat";
+  static final String TEXT = "a big red\tapple \\ please";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  // Where the mappings file goes
+  @TempDir
+  Path dir;
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * A category and an item whose names hold spaces are replayed from the
+   * journal as they were added.
+   */
+  @Test
+  public void replaysNamesWithSpaces() throws IOException {
+    String filename = this.emptyMappings();
+    this.journalEdits(filename);
+
+    AACMappings reopened = new AACMappings(filename);
+    MappingsJournal.open(filename, reopened).close();
+    this.assertEdited(reopened);
+  } // replaysNamesWithSpaces()
+
+  /**
+   * Compacting folds the same edits into the mappings file, and empties the journal.
+   */
+  @Test
+  public void compactsNamesWithSpaces() throws Exception {
+    String filename = this.emptyMappings();
+    this.journalEdits(filename);
+
+    AACMappings reopened = new AACMappings(filename);
+    MappingsJournal journal = MappingsJournal.open(filename, reopened);
+    journal.compact().get();
+    journal.close();
+    assertEquals(0, Files.size(Path.of(filename + ".journal")));
+    assertFalse(Files.exists(Path.of(filename + ".journal.compacting")));
+
+    AACMappings compacted = new AACMappings(filename);
+    this.assertEdited(compacted);
+  } // compactsNamesWithSpaces()
+
+  /**
+   * Records written before fields were separated by tabs are still replayed.
+   */
+  @Test
+  public void replaysOldRecords() throws IOException {
+    String filename = this.emptyMappings();
+    Files.write(Path.of(filename + ".journal"),
+        ("C img/food.png food\nI food img/apple.png an apple\n")
+            .getBytes(StandardCharsets.UTF_8));
+
+    AACMappings reopened = new AACMappings(filename);
+    MappingsJournal.open(filename, reopened).close();
+    assertEquals("food", reopened.getText("img/food.png"));
+    assertEquals("an apple", reopened.getText("img/apple.png"));
+  } // replaysOldRecords()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Writes a mappings file with nothing in it
+   */
+  private String emptyMappings() throws IOException {
+    Path file = this.dir.resolve("mappings.txt");
+    Files.write(file, new byte[0]);
+    return file.toString();
+  } // emptyMappings()
+
+  /**
+   * Adds a category and an item to the mappings in filename, journaling them
+   */
+  private void journalEdits(String filename) throws IOException {
+    AACMappings mappings = new AACMappings(filename);
+    MappingsJournal journal = MappingsJournal.open(filename, mappings);
+    mappings.add("", "img/food.png", CATEGORY);
+    mappings.add(CATEGORY, "img/apple.png", TEXT);
+    journal.close();
+  } // journalEdits(String)
+
+  /**
+   * Checks that mappings has the category and the item journalEdits added
+   */
+  private void assertEdited(AACMappings mappings) {
+    assertArrayEquals(new String[] {"img/food.png"}, mappings.getImageLocs());
+    assertEquals(CATEGORY, mappings.getText("img/food.png"));
+    assertArrayEquals(new String[] {"img/apple.png"}, mappings.getImageLocs());
+    assertEquals(TEXT, mappings.getText("img/apple.png"));
+  } // assertEdited(AACMappings)
+} // class MappingsJournalTest
@@ -0,0 +1,193 @@
+package structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stress tests for ConcurrentAssociativeArray: many threads set, remove,
+ * and iterate over a small set of keys at once, then the views are checked
+ * against the table.
+ *
+ * @author Wenfei Lin
+ */
+public class ConcurrentAssociativeArrayTest {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many threads change the array at once.
+   */
+  static final int WRITERS = 8;
+
+  /**
+   * How many threads iterate over the array while it changes.
+   */
+  static final int READERS = 2;
+
+  /**
+   * How many distinct keys there are (few, so threads collide often).
+   */
+  static final int KEYS = 64;
+
+  /**
+   * How many operations each writer does.
+   */
+  static final int OPERATIONS = 200_000;
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Sets and removes racing on the same keys leave the views consistent
+   * with the table: every key in keys() is there, once, and the views are
+   * as long as size().
+   */
+  @Test
+  public void setRemoveAndIterate() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> array =
+        new ConcurrentAssociativeArray<String, Integer>();
+    ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch writersDone = new CountDownLatch(WRITERS);
+    ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+
+    for (int w = 0; w < WRITERS; w++) {
+      tasks.add(pool.submit(() -> {
+        start.await();
+        try {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < OPERATIONS; i++) {
+            String key = "k" + random.nextInt(KEYS);
+            if (random.nextBoolean()) {
+              array.set(key, i);
+            } else {
+              array.remove(key);
+            } // if/else
+          } // for
+        } finally {
+          writersDone.countDown();
+        } // try/finally
+        return null;
+      }));
+    } // for
+    for (int r = 0; r < READERS; r++) {
+      tasks.add(pool.submit(() -> {
+        start.await();
+        while (writersDone.getCount() > 0) {
+          // Walking while the array changes must never fail (a key removed and
+          // added again during the walk may be seen twice, which is allowed)
+          for (KVPair<String, Integer> pair : array.entries()) {
+            assertTrue(pair.key.startsWith("k"));
+          } // for
+          array.getKeysForAAC();
+          array.toString();
+        } // while
+        return null;
+      }));
+    } // for
+
+    start.countDown();
+    for (Future<?> task : tasks) {
+      task.get(2, TimeUnit.MINUTES);
+    } // for
+    pool.shutdown();
+    assertConsistent(array);
+  } // setRemoveAndIterate()
+
+  /**
+   * Threads that add the same keys at once add each key once.
+   */
+  @Test
+  public void racingSetsOfTheSameKey() throws Exception {
+    for (int round = 0; round < 200; round++) {
+      ConcurrentAssociativeArray<String, Integer> array =
+          new ConcurrentAssociativeArray<String, Integer>();
+      ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+      CountDownLatch start = new CountDownLatch(1);
+      ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+      for (int w = 0; w < WRITERS; w++) {
+        int value = w;
+        tasks.add(pool.submit(() -> {
+          start.await();
+          for (int k = 0; k < KEYS; k++) {
+            array.set("k" + k, value);
+          } // for
+          return null;
+        }));
+      } // for
+      start.countDown();
+      for (Future<?> task : tasks) {
+        task.get(1, TimeUnit.MINUTES);
+      } // for
+      pool.shutdown();
+      assertEquals(KEYS, array.size());
+      assertConsistent(array);
+    } // for
+  } // racingSetsOfTheSameKey()
+
+  /**
+   * A clone holds the pairs of the original, in the same order, and does
+   * not change with it.
+   */
+  @Test
+  public void cloneIsIndependent() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> array =
+        new ConcurrentAssociativeArray<String, Integer>();
+    for (int k = 0; k < KEYS; k++) {
+      array.set("k" + k, k);
+    } // for
+    array.remove("k3");
+    ConcurrentAssociativeArray<String, Integer> clone = array.clone();
+    array.remove("k4");
+    array.set("k5", -5);
+
+    assertEquals(KEYS - 1, clone.size());
+    assertFalse(clone.containsKey("k3"));
+    assertEquals(4, clone.get("k4"));
+    assertEquals(5, clone.get("k5"));
+    assertEquals(List.of("k0", "k1", "k2"),
+        new ArrayList<String>(clone.keys()).subList(0, 3));
+    assertConsistent(clone);
+  } // cloneIsIndependent()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Checks that, with no other thread using it, every view of array agrees
+   * with its table.
+   */
+  private static void assertConsistent(ConcurrentAssociativeArray<String, Integer> array)
+      throws Exception {
+    HashSet<String> keys = new HashSet<String>();
+    for (String key : array.keys()) {
+      assertTrue(keys.add(key), "key listed twice: " + key);
+      assertTrue(array.containsKey(key), "removed key still listed: " + key);
+    } // for
+    assertEquals(array.size(), keys.size());
+    assertEquals(array.size(), array.values().stream().count());
+    assertEquals(array.size(), array.entries().stream().count());
+    assertEquals(array.size(), array.getKeysForAAC().length);
+    assertEquals(array.size(), array.clone().keys().stream().count());
+    for (int k = 0; k < KEYS; k++) {
+      String key = "k" + k;
+      assertEquals(array.containsKey(key), keys.contains(key), key);
+    } // for
+  } // assertConsistent(ConcurrentAssociativeArray<String, Integer>)
+} // class ConcurrentAssociativeArrayTest